@@ -0,0 +1,152 @@
+/*
+ * @filename BoardListener.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A model listener for benchmarks
+ */
+package nim;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A model listener that does no work of its own. It keeps the last
+ * board it was shown and counts moves, and can wake a thread that is
+ * waiting for a move to come back.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+class BoardListener implements ModelListener {
+
+    /** The last board shown, the model's own, so only read between moves */
+    PileView board;
+
+    /** Moves seen */
+    volatile long moves;
+
+    /** Games seen */
+    volatile long games;
+
+    /** Quits seen */
+    volatile int quits;
+
+    /** The thread to wake on each move, or null */
+    volatile Thread waiter;
+
+    /**
+     * Report a player quit
+     */
+    @Override
+    public void quit() {
+        quits++;
+        wake();
+    }
+
+    /**
+     * Report a player made a move
+     *
+     * @param piles the new piles formed from the move
+     */
+    @Override
+    public void moveMade(PileView piles) {
+        board = piles;
+        moves++;
+        wake();
+    }
+
+    /**
+     * Report a player made a move, along with the move itself
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     * @param piles the new piles formed from the move, or null
+     */
+    @Override
+    public void moveApplied(int pile, int start, int amount, int checksum,
+                            PileView piles) {
+        if(piles != null)
+            board = piles;
+        moves++;
+        wake();
+    }
+
+    /**
+     * Report that a player is waiting for other player
+     */
+    @Override
+    public void waitingForOtherPlayer() {}
+
+    /**
+     * Report that it's my turn to play
+     */
+    @Override
+    public void myTurn() {}
+
+    /**
+     * Report that it's another players turn to play
+     *
+     * @param player the player who's turn it is
+     */
+    @Override
+    public void otherTurn(String player) {}
+
+    /**
+     * Report that this player has won
+     */
+    @Override
+    public void youWon() {}
+
+    /**
+     * Report that another player has won
+     *
+     * @param player the winning player
+     */
+    @Override
+    public void otherWin(String player) {}
+
+    /**
+     * Report that a new game has been started
+     *
+     * @param piles the list of piles and amounts
+     */
+    @Override
+    public void newGame(PileView piles) {
+        board = piles;
+        games++;
+        wake();
+    }
+
+    /**
+     * Wait until more moves than a count have been seen
+     *
+     * @param count the moves seen before
+     */
+    void awaitMoves(long count){
+        waiter = Thread.currentThread();
+        while(moves <= count)
+            LockSupport.park(this);
+    }
+
+    /**
+     * Wait until more games than a count have been seen
+     *
+     * @param count the games seen before
+     */
+    void awaitGames(long count){
+        waiter = Thread.currentThread();
+        while(games <= count)
+            LockSupport.park(this);
+    }
+
+    /**
+     * Wake the waiting thread, if there is one
+     */
+    private void wake(){
+        Thread thread = waiter;
+        if(thread != null)
+            LockSupport.unpark(thread);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * @filename DecodeBenchmark.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Benchmarks of reading each message
+ */
+package nim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of decoding one message through the proxies and handing it
+ * to the listener, for each protocol version. The bytes are whatever the
+ * other proxy really writes for the message at that version, read over
+ * and over from memory.
+ *
+ * moveRequest is decoded by ViewProxy, the rest by ModelProxy.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    /** The protocol version */
+    @Param({"1", "2", "3"})
+    int version;
+
+    /** Piles on the board */
+    @Param({"8", "100"})
+    int piles;
+
+    /** The message decoded */
+    @Param({"move", "newGame", "otherTurn", "myTurn", "moveRequest"})
+    String message;
+
+    /** Both proxies */
+    private ProxyPair pair;
+
+    /** True when the server end decodes */
+    private boolean server;
+
+    /**
+     * Capture the message from the end that sends it and replay it to
+     * the end that reads it
+     *
+     * @throws Exception if the proxies can't be set up
+     */
+    @Setup
+    public void setup() throws Exception {
+        pair = new ProxyPair(version);
+        int[] start = new int[piles];
+        Arrays.fill(start, EncodeBenchmark.HEIGHT);
+        PileArray board = new PileArray(start);
+
+        // requests are captured off the client's socket, the server's
+        // messages are taken as staged since they're written by a thread
+        server = message.equals("moveRequest");
+        if(server)
+            pair.clientSocket.capture();
+        switch (message) {
+            case "move" -> pair.view.moveApplied(piles / 2, 0, 1,
+                    board.checksum(), board);
+            case "newGame" -> pair.view.newGame(board);
+            case "otherTurn" -> pair.view.otherTurn("player");
+            case "myTurn" -> pair.view.myTurn();
+            case "moveRequest" -> pair.proxy.moveRequest(piles / 2, 0, 1);
+            default -> throw new IllegalArgumentException(message);
+        }
+        byte[] sent = server ? pair.clientSocket.captured()
+                : pair.view.takeStaged();
+        (server ? pair.serverSocket : pair.clientSocket).replay(sent);
+    }
+
+    /**
+     * Read the message
+     *
+     * @throws IOException never, the input is in memory
+     */
+    @Benchmark
+    public void decode() throws IOException {
+        if(server)
+            pair.view.readMessage();
+        else
+            pair.proxy.readMessage();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * @filename EncodeBenchmark.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Benchmarks of writing each message
+ */
+package nim;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of encoding one message through the proxies, for each
+ * protocol version. The server messages go through ViewProxy into its
+ * staged frame, which is taken every so often rather than after each
+ * one, as the server does between flushes. The client's move request
+ * goes through ModelProxy, which flushes every request.
+ *
+ * A move is whatever ViewProxy sends for it at the version: the whole
+ * board before version 3, just the move from then on.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    /** Sticks in every pile, small enough for version 1 */
+    static final int HEIGHT = 100;
+
+    /** Server messages staged before the frame is taken */
+    private static final int FRAME_MESSAGES = 1024;
+
+    /** The protocol version */
+    @Param({"1", "2", "3"})
+    int version;
+
+    /** Piles on the board, version 1 can't send more than 127 */
+    @Param({"8", "100"})
+    int piles;
+
+    /** Both proxies */
+    private ProxyPair pair;
+
+    /** The board sent */
+    private PileArray board;
+
+    /** The board's checksum */
+    private int checksum;
+
+    /** Server messages staged since the frame was last taken */
+    private int staged;
+
+    /**
+     * Set up the proxies and the board
+     *
+     * @throws Exception if the proxies can't be set up
+     */
+    @Setup
+    public void setup() throws Exception {
+        pair = new ProxyPair(version);
+        int[] start = new int[piles];
+        Arrays.fill(start, HEIGHT);
+        board = new PileArray(start);
+        checksum = board.checksum();
+    }
+
+    /**
+     * Tell a client about a move
+     */
+    @Benchmark
+    public void move(){
+        pair.view.moveApplied(piles / 2, 0, 1, checksum, board);
+        staged();
+    }
+
+    /**
+     * Tell a client a game started
+     */
+    @Benchmark
+    public void newGame(){
+        pair.view.newGame(board);
+        staged();
+    }
+
+    /**
+     * Tell a client whose turn it is
+     */
+    @Benchmark
+    public void otherTurn(){
+        pair.view.otherTurn("player");
+        staged();
+    }
+
+    /**
+     * Tell a client it is their turn
+     */
+    @Benchmark
+    public void myTurn(){
+        pair.view.myTurn();
+        staged();
+    }
+
+    /**
+     * Ask the server for a move
+     */
+    @Benchmark
+    public void moveRequest(){
+        pair.proxy.moveRequest(piles / 2, 0, 1);
+    }
+
+    /**
+     * Count a staged server message, taking the frame once it holds
+     * enough that it doesn't grow without end
+     */
+    private void staged(){
+        if(++staged == FRAME_MESSAGES) {
+            staged = 0;
+            pair.view.takeStaged();
+        }
+    }
+}
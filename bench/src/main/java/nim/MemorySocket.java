@@ -0,0 +1,216 @@
+/*
+ * @filename MemorySocket.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A socket that reads and writes memory, for benchmarks
+ */
+package nim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A socket that is never connected, so the proxies can be measured
+ * without the network. Reads first return a handshake and then end,
+ * which makes a proxy's input thread set itself up and exit. After
+ * that the benchmark calls replay, and reads go round the same message
+ * forever for the benchmark's own thread to decode. Writes are dropped
+ * unless they are being captured, which is how a benchmark gets the
+ * bytes a proxy really sends for a message.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+class MemorySocket extends Socket {
+
+    /** What reads return */
+    private final Input input;
+
+    /** Where writes go while capturing */
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    /** True while writes are kept */
+    private volatile boolean capturing;
+
+    /** What writes go to */
+    private final OutputStream output = new OutputStream() {
+        @Override
+        public void write(int b){
+            if(capturing)
+                captured.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len){
+            if(capturing)
+                captured.write(b, off, len);
+        }
+    };
+
+    /** Counted down when a proxy closes the socket */
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Create a socket
+     *
+     * @param handshake what reads return before the end of the stream
+     */
+    MemorySocket(byte[] handshake){
+        input = new Input(handshake);
+    }
+
+    /**
+     * Make reads go round a message forever
+     *
+     * @param message the message
+     */
+    void replay(byte[] message){
+        input.replay(message);
+    }
+
+    /**
+     * Start keeping what is written
+     */
+    void capture(){
+        captured.reset();
+        capturing = true;
+    }
+
+    /**
+     * Stop keeping what is written
+     *
+     * @return everything written since capture was called
+     */
+    byte[] captured(){
+        capturing = false;
+        return captured.toByteArray();
+    }
+
+    /**
+     * Wait for the proxy that owns the socket to close it
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitClosed() throws InterruptedException {
+        if(!closed.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("proxy didn't close the socket");
+    }
+
+    /**
+     * Get the stream reads come from
+     *
+     * @return the stream
+     */
+    @Override
+    public InputStream getInputStream(){
+        return input;
+    }
+
+    /**
+     * Get the stream writes go to
+     *
+     * @return the stream
+     */
+    @Override
+    public OutputStream getOutputStream(){
+        return output;
+    }
+
+    /**
+     * Nothing to set, there is no connection
+     *
+     * @param on ignored
+     */
+    @Override
+    public void setTcpNoDelay(boolean on){}
+
+    /**
+     * Record that the proxy is done with the socket
+     */
+    @Override
+    public void close(){
+        closed.countDown();
+    }
+
+    /**
+     * Reads from a handshake, then the end of the stream, then a
+     * message over and over
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Input extends InputStream {
+
+        /** The bytes being read */
+        private volatile byte[] data;
+
+        /** True once data repeats */
+        private volatile boolean repeat;
+
+        /** Where the next read starts */
+        private int position;
+
+        /**
+         * Create a stream that reads a handshake and ends
+         *
+         * @param handshake the handshake
+         */
+        Input(byte[] handshake){
+            data = handshake;
+        }
+
+        /**
+         * Start going round a message
+         *
+         * @param message the message
+         */
+        void replay(byte[] message){
+            position = 0;
+            data = message;
+            repeat = true;
+        }
+
+        /**
+         * Read a byte
+         *
+         * @return the byte, or -1 at the end of the handshake
+         */
+        @Override
+        public int read(){
+            byte[] d = data;
+            if(position == d.length){
+                if(!repeat)
+                    return -1;
+                position = 0;
+            }
+            return d[position++] & 0xFF;
+        }
+
+        /**
+         * Read bytes
+         *
+         * @param b where to put them
+         * @param off where in b to start
+         * @param len the most to read
+         * @return the number read, or -1 at the end of the handshake
+         */
+        @Override
+        public int read(byte[] b, int off, int len){
+            byte[] d = data;
+            if(position == d.length){
+                if(!repeat)
+                    return -1;
+                position = 0;
+            }
+            int n = Math.min(len, d.length - position);
+            System.arraycopy(d, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * @filename MoveBenchmark.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Benchmarks of NimModel.moveRequest
+ */
+package nim;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of one move in the model, for each kind of move, with
+ * listeners that do nothing. Every pile starts with a million sticks.
+ *
+ * take takes one stick from the end of each pile in turn. remove takes
+ * the middle pile whole. split takes one stick from near the start of
+ * the middle pile, and after that from the bigger of the two piles the
+ * last split left, so every split moves about half the board. Those two
+ * change the number of piles, so every so often the game is restarted
+ * and that restart is part of the cost: remove restarts once one pile
+ * is left, split once the board has doubled.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    /** Sticks in every pile at the start */
+    private static final int HEIGHT = 1 << 20;
+
+    /** Piles at the start */
+    @Param({"8", "1024"})
+    int piles;
+
+    /** The game */
+    private NimModel model;
+
+    /** Player 1, keeps the board */
+    private BoardListener watcher;
+
+    /** The next pile to take from */
+    private int next;
+
+    /**
+     * Start a game
+     */
+    @Setup
+    public void setup(){
+        int[] start = new int[piles];
+        Arrays.fill(start, HEIGHT);
+        model = new NimModel(start, null);
+        watcher = new BoardListener();
+        model.start(watcher, "p1", new BoardListener(), "p2");
+    }
+
+    /**
+     * Take one stick from the end of a pile
+     */
+    @Benchmark
+    public void take(){
+        PileView board = watcher.board;
+        if(next >= board.size())
+            next = 0;
+        if(board.get(next) < 2)
+            model.newGame();
+        else
+            model.moveRequest(next++, 0, 1);
+    }
+
+    /**
+     * Take the middle pile whole
+     */
+    @Benchmark
+    public void remove(){
+        PileView board = watcher.board;
+        if(board.size() == 1) {
+            model.newGame();
+            return;
+        }
+        int pile = board.size() / 2;
+        model.moveRequest(pile, 0, board.get(pile));
+    }
+
+    /**
+     * Take a stick out of a pile in the middle, leaving one stick
+     * before it
+     */
+    @Benchmark
+    public void split(){
+        PileView board = watcher.board;
+        int pile = piles / 2 + board.size() - piles;
+        if(board.size() >= 2 * piles)
+            model.newGame();
+        else
+            model.moveRequest(pile, 1, 1);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * @filename ProxyPair.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Both ends of a connection in memory, for benchmarks
+ */
+package nim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A ViewProxy and a ModelProxy that have each agreed on a protocol
+ * version, as if they had joined over a socket, but that read and write
+ * MemorySockets. Their input threads have already exited, so the
+ * benchmark thread is the only one using them.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+class ProxyPair {
+
+    /** The server end's socket */
+    final MemorySocket serverSocket;
+
+    /** The server end, talks to a client */
+    final ViewProxy view;
+
+    /** Gets what the server end decodes */
+    final RequestListener requests = new RequestListener();
+
+    /** The client end's socket */
+    final MemorySocket clientSocket;
+
+    /** The client end, talks to the server */
+    final ModelProxy proxy;
+
+    /** Gets what the client end decodes */
+    final BoardListener listener = new BoardListener();
+
+    /**
+     * Set up both ends
+     *
+     * @param version the protocol version both ends speak
+     * @throws IOException if a handshake can't be made
+     * @throws InterruptedException if interrupted while waiting for
+     * an input thread to exit
+     */
+    ProxyPair(int version) throws IOException, InterruptedException {
+        // the server end hears a join, answers it and hits the end of input
+        ByteArrayOutputStream join = new ByteArrayOutputStream();
+        DataOutputStream joinData = new DataOutputStream(join);
+        if(version > WireCodec.V1) {
+            joinData.writeByte(ViewListener.VERSIONED_JOIN);
+            joinData.writeByte(version);
+        } else {
+            joinData.writeByte(ViewListener.JOIN);
+        }
+        joinData.writeUTF("bench");
+        serverSocket = new MemorySocket(join.toByteArray());
+        view = new ViewProxy(serverSocket);
+        view.setListener(requests);
+        serverSocket.awaitClosed();
+        view.flush();
+
+        // the client end hears the version the server picked
+        byte[] answer = version > WireCodec.V1 ?
+                new byte[]{ModelListener.VERSION, (byte) version} :
+                new byte[0];
+        clientSocket = new MemorySocket(answer);
+        proxy = new ModelProxy(clientSocket, ThreadMode.PLATFORM, version);
+        proxy.setListener(listener);
+        clientSocket.awaitClosed();
+    }
+
+    /**
+     * A view listener that only counts move requests
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    static class RequestListener implements ViewListener {
+
+        /** Move requests seen */
+        long moves;
+
+        /**
+         * Count a move request
+         *
+         * @param pile  the pile number (zero indexed)
+         * @param start the start amount to take
+         * @param amount the amount to take from the start index
+         */
+        @Override
+        public void moveRequest(int pile, int start, int amount) {
+            moves++;
+        }
+
+        /**
+         * Restart the game, nothing to do
+         */
+        @Override
+        public void newGame() {}
+
+        /**
+         * Report that a player has joined a game, nothing to do
+         *
+         * @param view the view that we are talking to
+         * @param name the name of the player
+         */
+        @Override
+        public void join(ModelListener view, String name) {}
+
+        /**
+         * End the game, nothing to do
+         */
+        @Override
+        public void quit() {}
+
+        /**
+         * Send the whole board, nothing to do
+         *
+         * @param view the view that wants the board
+         */
+        @Override
+        public void resync(ModelListener view) {}
+
+        /**
+         * Give a seat back, nothing to do
+         *
+         * @param view the view taking the seat
+         * @param token the token the seat was given
+         */
+        @Override
+        public void resume(ModelListener view, long token) {}
+
+        /**
+         * Ask for a hint, nothing to do
+         *
+         * @param view the view that wants the hint
+         */
+        @Override
+        public void hint(ModelListener view) {}
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * @filename RoundTripBenchmark.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Benchmark of a move over a loopback socket
+ */
+package nim;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time from ModelProxy.moveRequest to the client hearing about the
+ * move, through a real server side: a ViewProxy on a loopback socket in
+ * front of a NimModel. The other seat is taken by a listener in the
+ * same process, since the model doesn't check whose turn it is.
+ *
+ * Each move takes one stick from the end of a pile, going round the
+ * piles, and the game is restarted before any pile runs out.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    /** The protocol version */
+    @Param({"1", "2", "3"})
+    int version;
+
+    /** Piles on the board */
+    @Param({"8", "100"})
+    int piles;
+
+    /** The client's socket */
+    private Socket socket;
+
+    /** The client */
+    private ModelProxy proxy;
+
+    /** Hears the moves come back */
+    private BoardListener listener;
+
+    /** The game */
+    private NimModel model;
+
+    /** The next pile to take from */
+    private int next;
+
+    /** Sticks left in every pile after this round of moves */
+    private int height;
+
+    /**
+     * Connect a client to a game
+     *
+     * @throws IOException if the loopback connection fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        int[] start = new int[piles];
+        Arrays.fill(start, EncodeBenchmark.HEIGHT);
+        model = new NimModel(start, null);
+        height = EncodeBenchmark.HEIGHT;
+
+        Socket serverEnd;
+        try (ServerSocket server = new ServerSocket(0, 1,
+                InetAddress.getLoopbackAddress())){
+            socket = new Socket(InetAddress.getLoopbackAddress(),
+                    server.getLocalPort());
+            serverEnd = server.accept();
+        }
+        new ViewProxy(serverEnd).setListener(model);
+
+        listener = new BoardListener();
+        proxy = new ModelProxy(socket, ThreadMode.PLATFORM, version);
+        proxy.setListener(listener);
+        proxy.join(null, "client");
+        model.join(new BoardListener(), "local");
+        listener.awaitGames(0);
+    }
+
+    /**
+     * Make a move and wait to hear it back
+     */
+    @Benchmark
+    public void move(){
+        if(next == piles) {
+            next = 0;
+            if(--height == 1) {
+                height = EncodeBenchmark.HEIGHT;
+                long games = listener.games;
+                model.newGame();
+                listener.awaitGames(games);
+            }
+        }
+        long moves = listener.moves;
+        proxy.moveRequest(next++, 0, 1);
+        listener.awaitMoves(moves);
+    }
+
+    /**
+     * Leave the game and let both ends close the connection
+     *
+     * @throws IOException if the socket can't be shut down
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        int quits = listener.quits;
+        proxy.quit();
+        socket.shutdownOutput();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(listener.quits < quits + 2 && System.nanoTime() < deadline)
+            Thread.onSpinWait();
+    }
+}
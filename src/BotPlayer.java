@@ -0,0 +1,334 @@
+/*
+ * @filename BotPlayer.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A computer opponent that plays inside the server
+ */
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A model listener that plays a seat of a NimModel itself. It needs no
+ * socket and no thread of its own, its moves are worked out on a shared
+ * executor, so any number of bot games run on a few threads.
+ *
+ * How long each move takes to work out, from the bot's turn starting
+ * to its move being sent, is recorded in NimMetrics, so the CPU bots
+ * use can be watched and their budget set to match.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class BotPlayer implements ModelListener {
+
+    /**
+     * How well a bot plays
+     */
+    public enum Strength {
+
+        /** Any legal move */
+        RANDOM,
+
+        /** Takes the biggest pile it can without taking the last stick */
+        GREEDY,
+
+        /** Plays a winning move whenever there is one */
+        PERFECT,
+
+        /**
+         * Plays the move that does best in random games, for boards too
+         * big for a Grundy table, see MctsEngine
+         */
+        MCTS;
+
+        /**
+         * Look up a strength from a command line argument
+         *
+         * @param arg the argument, like "perfect"
+         * @return the strength, or null if the argument isn't one
+         */
+        public static Strength parse(String arg){
+            for(Strength strength : values())
+                if(strength.name().equalsIgnoreCase(arg))
+                    return strength;
+            return null;
+        }
+    }
+
+    /** Most moves waiting to be worked out before new ones are put off */
+    private static final int QUEUE_SIZE = 65_536;
+
+    /** Milliseconds a move is put off for when the queue is full */
+    private static final long RETRY_DELAY = 10;
+
+    /** Hands put off moves back to the shared executor */
+    private static final ScheduledExecutorService retries =
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "bot-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** The executor bots work out their moves on unless given another */
+    public static final Executor SHARED = sharedExecutor();
+
+    /** The game this bot plays in */
+    private final ViewListener game;
+
+    /** How well this bot plays */
+    private final Strength strength;
+
+    /** Where moves are worked out */
+    private final Executor executor;
+
+    /** Works out perfect moves */
+    private final GrundySolver solver;
+
+    /** This bot's copy of the board */
+    private volatile Board board = Board.EMPTY;
+
+    /**
+     * Create a new bot on the shared executor
+     *
+     * @param game the game to play in
+     * @param strength how well to play
+     * @param solver works out perfect moves
+     */
+    public BotPlayer(ViewListener game, Strength strength,
+                     GrundySolver solver){
+        this(game, strength, solver, SHARED);
+    }
+
+    /**
+     * Create a new bot
+     *
+     * @param game the game to play in
+     * @param strength how well to play
+     * @param solver works out perfect moves
+     * @param executor where to work out moves
+     */
+    public BotPlayer(ViewListener game, Strength strength,
+                     GrundySolver solver, Executor executor){
+        this.game = game;
+        this.strength = strength;
+        this.solver = solver;
+        this.executor = executor;
+    }
+
+    /**
+     * Make the bounded executor all bots share by default. A bot is told
+     * it's its turn under its game's lock or on an event loop, so when
+     * the queue is full the move is put off and queued again a little
+     * later, rather than worked out, and sent, on the thread that asked.
+     *
+     * @return the executor
+     */
+    private static Executor sharedExecutor(){
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+                task -> {
+                    Thread thread = new Thread(task, "bot");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, pool) -> retries.schedule(() -> pool.execute(task),
+                        RETRY_DELAY, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Pick a move for a board
+     *
+     * @param strength how well to play
+     * @param solver works out perfect moves
+     * @param piles the board
+     * @param random where to get random numbers
+     * @return {pile, start, amount}
+     */
+    public static int[] chooseMove(Strength strength, GrundySolver solver,
+                                   int[] piles, Random random){
+        return chooseMove(strength, solver, piles, Piles.key(piles), random);
+    }
+
+    /**
+     * Pick a move for a board whose key is already known
+     *
+     * @param strength how well to play
+     * @param solver works out perfect moves
+     * @param piles the board
+     * @param key the key of the board, see Piles.key
+     * @param random where to get random numbers
+     * @return {pile, start, amount}
+     */
+    public static int[] chooseMove(Strength strength, GrundySolver solver,
+                                   int[] piles, long key, Random random){
+        if(strength == Strength.PERFECT){
+            int[] move = solver.winningMove(piles, key);
+            if(move != null)
+                return move;
+        } else if(strength == Strength.MCTS){
+            return MctsEngine.shared().choose(piles);
+        } else if(strength == Strength.GREEDY){
+            return greedyMove(piles);
+        }
+        return randomMove(piles, random);
+    }
+
+    /**
+     * Take the biggest pile whole, unless it is the last one, then leave
+     * a single stick of it
+     *
+     * @param piles the board
+     * @return {pile, start, amount}
+     */
+    private static int[] greedyMove(int[] piles){
+        int biggest = 0;
+        for(int i = 1; i < piles.length; i++)
+            if(piles[i] > piles[biggest])
+                biggest = i;
+        if(piles.length == 1 && piles[biggest] > 1)
+            return new int[]{biggest, 0, piles[biggest] - 1};
+        return new int[]{biggest, 0, piles[biggest]};
+    }
+
+    /**
+     * Take a random run of sticks from a random pile
+     *
+     * @param piles the board
+     * @param random where to get random numbers
+     * @return {pile, start, amount}
+     */
+    private static int[] randomMove(int[] piles, Random random){
+        int pile = random.nextInt(piles.length);
+        int start = random.nextInt(piles[pile]);
+        int amount = 1 + random.nextInt(piles[pile] - start);
+        return new int[]{pile, start, amount};
+    }
+
+    /**
+     * Report a player quit
+     */
+    @Override
+    public void quit() {
+        board = Board.EMPTY;
+    }
+
+    /**
+     * Report a player made a move
+     *
+     * @param piles the new piles formed from the move
+     */
+    @Override
+    public void moveMade(PileView piles) {
+        board = new Board(piles);
+    }
+
+    /**
+     * Report that a player is waiting for other player
+     */
+    @Override
+    public void waitingForOtherPlayer() {
+        // bots are only seated once there is a game
+    }
+
+    /**
+     * Work out and make a move
+     */
+    @Override
+    public void myTurn() {
+        long start = System.nanoTime();
+        executor.execute(() -> {
+            Board b = board;
+            if(b.piles.length == 0)
+                return;
+            int[] move = chooseMove(strength, solver, b.piles, b.key,
+                    ThreadLocalRandom.current());
+            NimMetrics.botDecision(System.nanoTime() - start);
+            game.moveRequest(move[0], move[1], move[2]);
+        });
+    }
+
+    /**
+     * Report that it's another players turn to play
+     *
+     * @param player the player who's turn it is
+     */
+    @Override
+    public void otherTurn(String player) {
+        // nothing to do until it is our turn
+    }
+
+    /**
+     * Report that this player has won
+     */
+    @Override
+    public void youWon() {
+        board = Board.EMPTY;
+    }
+
+    /**
+     * Report that another player has won
+     *
+     * @param player the winning player
+     */
+    @Override
+    public void otherWin(String player) {
+        board = Board.EMPTY;
+    }
+
+    /**
+     * Report that a new game has been started
+     *
+     * @param piles the list of piles and amounts
+     */
+    @Override
+    public void newGame(PileView piles) {
+        board = new Board(piles);
+    }
+
+    /**
+     * A copy of the board along with its key, kept together so a move is
+     * never worked out from one board and the key of another
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Board {
+
+        /** No board, between games */
+        static final Board EMPTY = new Board(new int[0], 0);
+
+        /** The piles */
+        final int[] piles;
+
+        /** The key of the piles */
+        final long key;
+
+        /**
+         * Copy a board
+         *
+         * @param piles the board, only good for the length of the call
+         */
+        Board(PileView piles){
+            this(piles.toArray(), piles.key());
+        }
+
+        /**
+         * Wrap a board
+         *
+         * @param piles the piles
+         * @param key the key of the piles
+         */
+        Board(int[] piles, long key){
+            this.piles = piles;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+/*
+ * @filename ChannelViewProxy.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * The non blocking counterpart of ViewProxy
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The model listener that talks to a client over a non blocking channel.
+ * Uses the exact same framing as ViewProxy, so clients can't tell which
+ * server mode they are connected to. Reading is done by the event loop
+ * that owns the channel. Messages are staged until the model flushes,
+ * then written by whichever thread the model calls from, falling back
+ * to the event loop when the socket is full. Frames waiting for the
+ * event loop are held in a bounded Outbound queue, and a client that
+ * falls too far behind is dealt with by the connection's SlowConsumer
+ * policy.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class ChannelViewProxy implements ModelListener {
+
+    /** Starting size of the inbound buffer, grown for long names */
+    private static final int INBOUND_SIZE = 64;
+
+    /** The channel to the client */
+    private final SocketChannel channel;
+
+    /** The event loop that owns the channel */
+    private final NioServer.EventLoop loop;
+
+    /** Bytes read from the client that haven't been decoded yet */
+    private ByteBuffer inbound = ByteBuffer.allocate(INBOUND_SIZE);
+
+    /** Messages written since the last flush */
+    private final ByteArrayOutputStream staged = new ByteArrayOutputStream();
+
+    /** Writes strings into the staged messages */
+    private final DataOutputStream stagedData = new DataOutputStream(staged);
+
+    /** What to do when the outbound queue is full */
+    private final SlowConsumer policy;
+
+    /** Frames that didn't fit in the socket buffer */
+    private Outbound pending;
+
+    /** The kind of the staged frame, the highest of its messages' kinds */
+    private int kind = Outbound.DROPPABLE;
+
+    /** If the quit has been sent, nothing is sent after it */
+    private boolean ended;
+
+    /** The last board the client was sent, for coalescing */
+    private PileView board;
+
+    /** The last turn or outcome message the client was sent, or 0 */
+    private int status;
+
+    /** The player name that went with the status message, or null */
+    private String statusName;
+
+    /** The view listener */
+    private ViewListener listener;
+
+    /** The protocol version spoken with the client */
+    private int version = WireCodec.V1;
+
+    /** If the channel has been closed */
+    private boolean closed;
+
+    /** If the client was given a session it can resume */
+    private volatile boolean resumable;
+
+    /** If the client has quit, so the end of input is expected */
+    private volatile boolean quit;
+
+    /**
+     * Create a new channel view proxy
+     *
+     * @param channel the non blocking channel to the client
+     * @param loop the event loop to register with
+     */
+    public ChannelViewProxy(SocketChannel channel, NioServer.EventLoop loop){
+        this(channel, loop, SlowConsumer.DISCONNECT);
+    }
+
+    /**
+     * Create a new channel view proxy with a policy for when the client
+     * can't keep up
+     *
+     * @param channel the non blocking channel to the client
+     * @param loop the event loop to register with
+     * @param policy what to do when the outbound queue is full
+     */
+    public ChannelViewProxy(SocketChannel channel, NioServer.EventLoop loop,
+                            SlowConsumer policy){
+        this.channel = channel;
+        this.loop = loop;
+        this.policy = policy;
+        NimMetrics.connected();
+    }
+
+    /**
+     * Set the listener and start reading from the channel
+     *
+     * @param listener the listener
+     */
+    public void setListener( ViewListener listener ){
+        this.listener = listener;
+        this.pending = new Outbound(policy, this::stalled);
+        loop.register(this);
+    }
+
+    /**
+     * Get the channel to the client
+     *
+     * @return the channel
+     */
+    SocketChannel channel(){
+        return channel;
+    }
+
+    /**
+     * Report a player quit
+     */
+    @Override
+    public void quit() {
+        stage(ModelListener.QUIT);
+    }
+
+    /**
+     * Report a player made a move
+     *
+     * @param piles the new piles formed from the move
+     */
+    @Override
+    public void moveMade(PileView piles) {
+        stage(ModelListener.MOVE_MADE, piles);
+    }
+
+    /**
+     * Report a player made a move, sending only the move to clients
+     * that can apply it themselves
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     * @param piles the new piles formed from the move
+     */
+    @Override
+    public synchronized void moveApplied(int pile, int start, int amount,
+                                         int checksum, PileView piles) {
+        if(version < WireCodec.V3) {
+            moveMade(piles);
+            return;
+        }
+        try {
+            NimMetrics.sent(ModelListener.MOVE_DELTA);
+            stagedData.writeByte(ModelListener.MOVE_DELTA);
+            WireCodec.writeInt(stagedData, version, pile);
+            WireCodec.writeInt(stagedData, version, start);
+            WireCodec.writeInt(stagedData, version, amount);
+            stagedData.writeInt(checksum);
+            board = piles;
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Report that a player is waiting for other player
+     */
+    @Override
+    public void waitingForOtherPlayer() {
+        stage(ModelListener.WAITING_OTHER_PLAYER);
+    }
+
+    /**
+     * Report that it's my turn to play
+     */
+    @Override
+    public void myTurn() {
+        stage(ModelListener.MY_TURN);
+    }
+
+    /**
+     * Report that it's another players turn to play
+     *
+     * @param player the player who's turn it is
+     */
+    @Override
+    public void otherTurn(String player) {
+        stage(ModelListener.OTHER_TURN, player);
+    }
+
+    /**
+     * Report that this player has won
+     */
+    @Override
+    public void youWon() {
+        stage(ModelListener.YOU_WON);
+    }
+
+    /**
+     * Report that another player has won
+     *
+     * @param player the winning player
+     */
+    @Override
+    public void otherWin(String player) {
+        stage(ModelListener.OTHER_WIN, player);
+    }
+
+    /**
+     * Report that a new game has been started
+     *
+     * @param piles the list of piles and amounts
+     */
+    @Override
+    public void newGame(PileView piles) {
+        stage(ModelListener.NEW_GAME, piles);
+    }
+
+    /**
+     * Give a client that speaks version 4 the token it can take its
+     * seat back with
+     *
+     * @param token the token
+     */
+    @Override
+    public synchronized void session(long token) {
+        if(version < WireCodec.V4)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.SESSION);
+            stagedData.writeByte(ModelListener.SESSION);
+            stagedData.writeLong(token);
+            kind = Math.max(kind, Outbound.ESSENTIAL);
+            resumable = true;
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Answer a client that speaks version 5 with the winning move
+     *
+     * @param move the winning move, or null if every move loses
+     */
+    @Override
+    public synchronized void hint(int[] move) {
+        if(version < WireCodec.V5)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.HINT);
+            stagedData.writeByte(ModelListener.HINT);
+            stagedData.writeByte(move == null ? WireCodec.HINT_LOSING
+                    : WireCodec.HINT_MOVE);
+            if(move != null)
+                for(int field : move)
+                    WireCodec.writeInt(stagedData, version, field);
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Tell the client its hint wasn't worked out
+     */
+    @Override
+    public synchronized void noHint() {
+        if(version < WireCodec.V5)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.HINT);
+            stagedData.writeByte(ModelListener.HINT);
+            stagedData.writeByte(WireCodec.HINT_NONE);
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Send everything staged since the last flush as a single write
+     */
+    @Override
+    public synchronized void flush() {
+        if(staged.size() == 0)
+            return;
+        ByteBuffer frames = ByteBuffer.wrap(staged.toByteArray());
+        staged.reset();
+        int frameKind = kind;
+        kind = Outbound.DROPPABLE;
+        send(frames, frameKind);
+    }
+
+    /**
+     * Stage a message that is just an opcode
+     *
+     * @param op the opcode
+     */
+    private synchronized void stage(int op){
+        NimMetrics.sent(op);
+        staged.write(op);
+        if(op == ModelListener.QUIT)
+            kind = Outbound.FINAL;
+        else if(op == ModelListener.VERSION)
+            kind = Math.max(kind, Outbound.ESSENTIAL);
+        else
+            status(op, null);
+    }
+
+    /**
+     * Stage a message with a list of piles
+     *
+     * @param op the opcode
+     * @param piles the piles
+     */
+    private synchronized void stage(int op, PileView piles){
+        NimMetrics.sent(op);
+        try {
+            stagedData.writeByte(op);
+            WireCodec.writePiles(stagedData, version, piles);
+            board = piles;
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Stage a message with a player name
+     *
+     * @param op the opcode
+     * @param name the player name
+     */
+    private synchronized void stage(int op, String name){
+        NimMetrics.sent(op);
+        try {
+            stagedData.writeByte(op);
+            stagedData.writeUTF(name);
+            status(op, name);
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+    }
+
+    /**
+     * Remember the last turn or outcome message, for coalescing
+     *
+     * @param op the opcode
+     * @param name the player name that went with it, or null
+     */
+    private void status(int op, String name){
+        status = op;
+        statusName = name;
+        kind = Math.max(kind, Outbound.TURN);
+    }
+
+    /**
+     * Make a frame with the whole board and whose turn it is, to send
+     * in place of the frames a slow client has fallen behind on
+     *
+     * @return the frame
+     */
+    private ByteBuffer latest(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            if(board != null){
+                data.writeByte(ModelListener.MOVE_MADE);
+                WireCodec.writePiles(data, version, board);
+            }
+            if(status != 0){
+                data.writeByte(status);
+                if(statusName != null)
+                    data.writeUTF(statusName);
+            }
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Write a frame, or queue it if the socket buffer is full
+     *
+     * @param frame the frame
+     * @param kind the kind of frame, see Outbound
+     */
+    private synchronized void send(ByteBuffer frame, int kind){
+        if(closed || ended)
+            return;
+        ended = kind == Outbound.FINAL;
+        boolean idle = pending.isEmpty();
+        if(idle){
+            try {
+                long start = System.nanoTime();
+                WireStats.wrote(channel.write(frame));
+                NimMetrics.flushed(System.nanoTime() - start);
+            } catch (IOException ioe){
+                loop.execute(this::disconnect);
+                return;
+            }
+            if(!frame.hasRemaining())
+                return;
+        }
+        if(!pending.add(frame, kind, this::latest))
+            loop.execute(this::disconnect);
+        else if(idle)
+            loop.interestWrite(this);
+    }
+
+    /**
+     * Write out queued frames once the socket can take them
+     *
+     * @param key the selection key of the channel
+     */
+    synchronized void onWritable(SelectionKey key){
+        try {
+            ByteBuffer head;
+            while((head = pending.head()) != null){
+                long start = System.nanoTime();
+                int wrote = channel.write(head);
+                NimMetrics.flushed(System.nanoTime() - start);
+                WireStats.wrote(wrote);
+                if(head.hasRemaining()) {
+                    if(wrote > 0)
+                        pending.wrote();
+                    return;
+                }
+                pending.written();
+            }
+            loop.clearWrite(key);
+        } catch (IOException ioe){
+            // not while holding the monitor, reporting the disconnect
+            // takes the game's lock, which a game flushing to this
+            // proxy already holds
+            loop.clearWrite(key);
+            loop.execute(this::disconnect);
+        }
+    }
+
+    /**
+     * Read what the client sent and decode every complete message
+     */
+    void onReadable(){
+        int read;
+        try {
+            read = channel.read(inbound);
+        } catch (IOException ioe){
+            disconnect();
+            return;
+        }
+        if(read == -1){
+            disconnect();
+            return;
+        }
+
+        inbound.flip();
+        while(!closed && decode()){
+            // keep decoding
+        }
+        inbound.compact();
+
+        // a message bigger than the buffer, make room for it
+        if(!inbound.hasRemaining()){
+            ByteBuffer bigger = ByteBuffer.allocate(inbound.capacity() * 2);
+            inbound.flip();
+            bigger.put(inbound);
+            inbound = bigger;
+        }
+    }
+
+    /**
+     * Decode a single message from the inbound buffer
+     *
+     * @return true if a message was decoded, false if more bytes are needed
+     */
+    private boolean decode(){
+        if(!inbound.hasRemaining())
+            return false;
+        inbound.mark();
+        int instruction = inbound.get();
+        switch (instruction) {
+            case ViewListener.JOIN, ViewListener.VERSIONED_JOIN -> {
+                int requested = WireCodec.V1;
+                if(instruction == ViewListener.VERSIONED_JOIN){
+                    if(!inbound.hasRemaining())
+                        return incomplete();
+                    requested = inbound.get();
+                }
+                if(inbound.remaining() < 2)
+                    return incomplete();
+                int length = inbound.getShort(inbound.position()) & 0xFFFF;
+                if(inbound.remaining() < 2 + length)
+                    return incomplete();
+                byte[] utf = new byte[2 + length];
+                inbound.get(utf);
+                if(instruction == ViewListener.VERSIONED_JOIN){
+                    version = WireCodec.negotiate(requested);
+                    stage(ModelListener.VERSION);
+                    staged.write(version);
+                }
+                listener.join(this, readUTF(utf));
+            }
+            case ViewListener.MOVE_REQUEST -> {
+                long pile = WireCodec.getInt(inbound, version);
+                long start = WireCodec.getInt(inbound, version);
+                long amount = WireCodec.getInt(inbound, version);
+                if(pile == WireCodec.MALFORMED || start == WireCodec.MALFORMED
+                        || amount == WireCodec.MALFORMED) {
+                    System.err.println("ChannelViewProxy: varint too long");
+                    disconnect();
+                    return false;
+                }
+                if(amount == WireCodec.INCOMPLETE)
+                    return incomplete();
+                listener.moveRequest((int) pile, (int) start, (int) amount);
+            }
+            case ViewListener.RESUME -> {
+                if(inbound.remaining() < 1 + 8)
+                    return incomplete();
+                version = WireCodec.negotiate(inbound.get());
+                long token = inbound.getLong();
+                stage(ModelListener.VERSION);
+                staged.write(version);
+                listener.resume(this, token);
+            }
+            case ViewListener.NEW_GAME -> listener.newGame();
+            case ViewListener.QUIT -> {
+                quit = true;
+                listener.quit();
+            }
+            case ViewListener.RESYNC -> listener.resync(this);
+            case ViewListener.HINT -> listener.hint(this);
+            default -> {
+                System.err.printf("ChannelViewProxy: '%s' Bad Message\n",
+                        instruction);
+                disconnect();
+                return false;
+            }
+        }
+        NimMetrics.received(instruction);
+        return true;
+    }
+
+    /**
+     * Rewind a partially received message
+     *
+     * @return false, always
+     */
+    private boolean incomplete(){
+        inbound.reset();
+        return false;
+    }
+
+    /**
+     * Decode a string the way DataInputStream.readUTF does
+     *
+     * @param utf the length prefixed modified UTF-8 bytes
+     * @return the string
+     */
+    private static String readUTF(byte[] utf){
+        try {
+            return new DataInputStream(new ByteArrayInputStream(utf))
+                    .readUTF();
+        } catch (IOException ioe){
+            errorMessage(ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Drop a client that hasn't taken any of its frames for too long,
+     * on the event loop that owns its channel
+     */
+    private void stalled(){
+        loop.execute(this::disconnect);
+    }
+
+    /**
+     * Drop the connection and report that the client is gone, unless it
+     * said so itself, on the event loop that owns the channel
+     */
+    void disconnect(){
+        boolean wasOpen;
+        synchronized (this){
+            wasOpen = !closed;
+        }
+        close();
+        if(!wasOpen || listener == null || quit)
+            return;
+        if(resumable)
+            listener.dropped(this);
+        else
+            listener.quit();
+    }
+
+    /**
+     * Close the channel and forget any queued output
+     */
+    synchronized void close(){
+        if(!closed)
+            NimMetrics.disconnected();
+        closed = true;
+        pending.close();
+        try {
+            channel.close();
+        } catch (IOException ignored){}
+    }
+
+    /**
+     * Error handler for IO exceptions when encoding and decoding
+     *
+     * @param exc the IOException
+     */
+    private static void errorMessage(IOException exc){
+        System.err.println("ChannelViewProxy: IO error");
+        exc.printStackTrace(System.err);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * @filename GameActor.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Runs a game's requests one at a time on a shared pool of threads
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stands in front of a NimModel and turns every request into a message
+ * in the game's own mailbox. Reader threads only post messages, so they
+ * never wait on each other or on a write to the other player's socket.
+ *
+ * A game always runs on the same worker of its pool, picked from its
+ * id, and only one message of a game runs at a time, so the model's
+ * lock is never contended and the game's state stays in one core's
+ * cache. A worker runs a batch of one game's messages and then moves on
+ * to the next game waiting, so many games share a few threads fairly.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GameActor implements ViewListener, Executor {
+
+    /** Most messages run before letting the worker's next game in */
+    private static final int BATCH = 64;
+
+    /** The game */
+    private final NimModel model;
+
+    /** The worker this game runs on */
+    private final ExecutorService worker;
+
+    /** Messages waiting to run */
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+    /** If the mailbox is waiting on or running on the worker */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Create an actor for a game
+     *
+     * @param model the game
+     * @param pool the workers to run on
+     */
+    public GameActor(NimModel model, Pool pool){
+        this.model = model;
+        this.worker = pool.worker(model.getId());
+    }
+
+    /**
+     * Run something against the game as one of its messages, like
+     * starting it
+     *
+     * @param task what to run
+     */
+    @Override
+    public void execute(Runnable task) {
+        post(task);
+    }
+
+    /**
+     * A request from the client to take a certain
+     * amount of sticks from a pile
+     *
+     * @param pile  the pile number (zero indexed)
+     * @param start the start amount to take
+     * @param amount the amount to take from the start index
+     */
+    @Override
+    public void moveRequest(int pile, int start, int amount) {
+        post(() -> model.moveRequest(pile, start, amount));
+    }
+
+    /**
+     * Restart the game, to the original one
+     */
+    @Override
+    public void newGame() {
+        post(model::newGame);
+    }
+
+    /**
+     * Report that a player has joined a game
+     *
+     * @param view the view that we are talking to
+     * @param name the name of the player
+     */
+    @Override
+    public void join(ModelListener view, String name) {
+        post(() -> model.join(view, name));
+    }
+
+    /**
+     * Cause server to end the game
+     */
+    @Override
+    public void quit() {
+        post(model::quit);
+    }
+
+    /**
+     * Send the whole board to a player whose copy has drifted
+     *
+     * @param view the view that wants the board
+     */
+    @Override
+    public void resync(ModelListener view) {
+        post(() -> model.resync(view));
+    }
+
+    /**
+     * Give a player whose connection dropped their seat back
+     *
+     * @param view the view taking the seat
+     * @param token the token the seat was given
+     */
+    @Override
+    public void resume(ModelListener view, long token) {
+        post(() -> model.resume(view, token));
+    }
+
+    /**
+     * Ask for the winning move of the board
+     *
+     * @param view the view that wants the hint
+     */
+    @Override
+    public void hint(ModelListener view) {
+        post(() -> model.hint(view, this));
+    }
+
+    /**
+     * Hold a player's seat while their connection is down
+     *
+     * @param view the view whose connection dropped
+     */
+    @Override
+    public void dropped(ModelListener view) {
+        post(() -> model.dropped(view));
+    }
+
+    /**
+     * Put a message in the mailbox, and get the game onto its worker if
+     * it isn't already
+     *
+     * @param message the message
+     */
+    private void post(Runnable message){
+        mailbox.add(message);
+        if(scheduled.compareAndSet(false, true))
+            worker.execute(this::drain);
+    }
+
+    /**
+     * Run a batch of messages, then give the worker up, coming back
+     * later if more have arrived
+     */
+    private void drain(){
+        for(int i = 0; i < BATCH; i++){
+            Runnable message = mailbox.poll();
+            if(message == null)
+                break;
+            try {
+                message.run();
+            } catch (RuntimeException re){
+                System.err.printf("GameActor: game %d failed\n",
+                        model.getId());
+                re.printStackTrace(System.err);
+            }
+        }
+        scheduled.set(false);
+        if(!mailbox.isEmpty() && scheduled.compareAndSet(false, true))
+            worker.execute(this::drain);
+    }
+
+    /**
+     * A fixed set of worker threads that games are spread over by id
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    public static class Pool {
+
+        /** The workers, each a single thread */
+        private final ExecutorService[] workers;
+
+        /**
+         * Start a pool
+         *
+         * @param threads the number of workers
+         */
+        public Pool(int threads){
+            workers = new ExecutorService[threads];
+            for(int i = 0; i < threads; i++){
+                String name = "game-" + i;
+                workers[i] = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+        /**
+         * Get the worker a game always runs on
+         *
+         * @param game the game id
+         * @return the worker
+         */
+        ExecutorService worker(long game){
+            return workers[Math.floorMod(Long.hashCode(game), workers.length)];
+        }
+    }
+}
@@ -0,0 +1,738 @@
+/*
+ * @filename GameLog.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * An asynchronous binary log of what happens in games
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs game events without making the game wait on the disk. An event
+ * is a few numbers copied into a slot of a ring buffer that is made
+ * once, up front, so logging a move allocates nothing, formats nothing
+ * and never blocks. One background thread drains the ring, encodes the
+ * events into binary records and writes them out in batches.
+ *
+ * Any number of threads may log at once. A thread claims a slot by
+ * moving the head with compare and set, fills it in, then publishes it
+ * by storing the slot's sequence number. The writer reads slots in
+ * order while they are published and moves the tail past them. If the
+ * ring is full the event is dropped and counted rather than waiting
+ * for the writer, and the count is written to the log as soon as there
+ * is room again.
+ *
+ * The log is written to game.log in its directory. When that reaches
+ * the size limit it is renamed to game.log.1, the older files move up
+ * one, and the oldest is deleted. The records can be read back as text
+ * with "java GameLog file".
+ *
+ * Record layout, big endian:
+ * <pre>
+ *   byte  event type
+ *   long  microseconds since the epoch
+ *   long  game id
+ *   ...   fields of the event type
+ * </pre>
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GameLog implements AutoCloseable {
+
+    /** Two players were seated: their names */
+    static final byte START = 'S';
+
+    /** A board was dealt: the number of piles, then each pile */
+    static final byte BOARD = 'B';
+
+    /** A move was made: player, pile, start, amount, checksum after */
+    static final byte MOVE = 'M';
+
+    /** A move was refused: player, pile, start, amount */
+    static final byte INVALID = 'I';
+
+    /** A game was won: the winning player */
+    static final byte WIN = 'W';
+
+    /** The game was restarted */
+    static final byte RESTART = 'R';
+
+    /** The game ended */
+    static final byte END = 'E';
+
+    /** Events were dropped because the ring was full: how many */
+    static final byte DROPPED = 'D';
+
+    /** "NIML" */
+    private static final int MAGIC = 0x4E494D4C;
+
+    /** The record layout described above */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The name of the file being written */
+    private static final String FILE_NAME = "game.log";
+
+    /** Slots in the ring unless given another size */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** Bytes a file grows to before it is rotated */
+    public static final long DEFAULT_FILE_SIZE = 64L << 20;
+
+    /** Rotated files kept */
+    public static final int DEFAULT_FILES = 8;
+
+    /** Bytes of the file header */
+    private static final int HEADER = 8;
+
+    /** Number fields per slot */
+    private static final int FIELDS = 5;
+
+    /** Object fields per slot */
+    private static final int REFS = 2;
+
+    /** Bytes encoded before they are written */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /** Most bytes of a player name kept, so any record fits the buffer */
+    private static final int MAX_NAME = WRITE_BUFFER / 4;
+
+    /** Nanoseconds the writer sleeps when there is nothing to write */
+    private static final long IDLE_NANOS = 1_000_000;
+
+    /** Slots minus one, for masking sequence numbers */
+    private final int mask;
+
+    /** The sequence number each slot was last published for, plus one */
+    private final AtomicLongArray published;
+
+    /** Event type of each slot */
+    private final byte[] types;
+
+    /** Time of each slot, in microseconds since the epoch */
+    private final long[] times;
+
+    /** Game of each slot */
+    private final long[] games;
+
+    /** Number fields of each slot, FIELDS per slot */
+    private final int[] fields;
+
+    /** Object fields of each slot, already immutable, REFS per slot */
+    private final Object[] refs;
+
+    /** Next sequence number to claim */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Next sequence number to write, only moved by the writer */
+    private volatile long tail;
+
+    /** Events dropped and not yet written to the log */
+    private final LongAdder dropped = new LongAdder();
+
+    /** Where the log files go */
+    private final Path directory;
+
+    /** Bytes a file grows to before it is rotated */
+    private final long fileSize;
+
+    /** Rotated files kept */
+    private final int files;
+
+    /** Wall clock at startNanos, in microseconds since the epoch */
+    private final long startMicros;
+
+    /** System.nanoTime when the log was opened */
+    private final long startNanos;
+
+    /** Records encoded but not yet written */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+
+    /** The file being written */
+    private FileChannel channel;
+
+    /** Bytes in the file being written */
+    private long written;
+
+    /** Drains the ring */
+    private final Thread writer;
+
+    /** Set to stop the writer once the ring is empty */
+    private volatile boolean closing;
+
+    /**
+     * Open a log with the default sizes
+     *
+     * @param directory where the log files go, made if missing
+     * @throws IOException if the log file can't be opened
+     */
+    public GameLog(Path directory) throws IOException {
+        this(directory, DEFAULT_CAPACITY, DEFAULT_FILE_SIZE, DEFAULT_FILES);
+    }
+
+    /**
+     * Open a log
+     *
+     * @param directory where the log files go, made if missing
+     * @param capacity slots in the ring, rounded up to a power of two
+     * @param fileSize bytes a file grows to before it is rotated
+     * @param files rotated files kept
+     * @throws IOException if the log file can't be opened
+     */
+    public GameLog(Path directory, int capacity, long fileSize, int files)
+            throws IOException {
+        int slots = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = slots - 1;
+        this.published = new AtomicLongArray(slots);
+        this.types = new byte[slots];
+        this.times = new long[slots];
+        this.games = new long[slots];
+        this.fields = new int[slots * FIELDS];
+        this.refs = new Object[slots * REFS];
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.files = files;
+        Instant now = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.startMicros = now.getEpochSecond() * 1_000_000 +
+                now.getNano() / 1_000;
+
+        Files.createDirectories(directory);
+        open();
+        writer = new Thread(this::drain, "game-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Log that two players were seated
+     *
+     * @param game the game
+     * @param player1 the name of player1
+     * @param player2 the name of player2
+     */
+    public void start(long game, String player1, String player2){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, START, game, 0, 0, 0, 0, 0, player1, player2);
+    }
+
+    /**
+     * Log that a board was dealt
+     *
+     * @param game the game
+     * @param piles the piles, which must never be changed afterwards
+     */
+    public void board(long game, int[] piles){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, BOARD, game, 0, 0, 0, 0, 0, piles, null);
+    }
+
+    /**
+     * Log a move
+     *
+     * @param game the game
+     * @param player the player who moved, 1 or 2
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     */
+    public void move(long game, int player, int pile, int start, int amount,
+                     int checksum){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, MOVE, game, player, pile, start, amount, checksum,
+                    null, null);
+    }
+
+    /**
+     * Log a refused move
+     *
+     * @param game the game
+     * @param player the player who tried it, 1 or 2
+     * @param pile the pile number asked for
+     * @param start the start amount asked for
+     * @param amount the amount asked for
+     */
+    public void invalid(long game, int player, int pile, int start,
+                        int amount){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, INVALID, game, player, pile, start, amount, 0,
+                    null, null);
+    }
+
+    /**
+     * Log a win
+     *
+     * @param game the game
+     * @param player the winner, 1 or 2
+     */
+    public void win(long game, int player){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, WIN, game, player, 0, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Log a restart
+     *
+     * @param game the game
+     */
+    public void restart(long game){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, RESTART, game, 0, 0, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Log the end of a game
+     *
+     * @param game the game
+     */
+    public void end(long game){
+        long seq = claim();
+        if(seq >= 0)
+            publish(seq, END, game, 0, 0, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Claim the next slot, unless the ring is full
+     *
+     * @return the sequence number of the slot, or -1 if the event was
+     * dropped
+     */
+    private long claim(){
+        while(true){
+            long seq = head.get();
+            if(seq - tail > mask || closing){
+                dropped.increment();
+                return -1;
+            }
+            if(head.compareAndSet(seq, seq + 1))
+                return seq;
+        }
+    }
+
+    /**
+     * Fill in a claimed slot and let the writer have it
+     *
+     * @param seq the sequence number of the slot
+     * @param type the event type
+     * @param game the game
+     * @param a the first number field
+     * @param b the second number field
+     * @param c the third number field
+     * @param d the fourth number field
+     * @param e the fifth number field
+     * @param x the first object field
+     * @param y the second object field
+     */
+    private void publish(long seq, byte type, long game, int a, int b, int c,
+                         int d, int e, Object x, Object y){
+        int slot = (int) seq & mask;
+        types[slot] = type;
+        times[slot] = now();
+        games[slot] = game;
+        int f = slot * FIELDS;
+        fields[f] = a;
+        fields[f + 1] = b;
+        fields[f + 2] = c;
+        fields[f + 3] = d;
+        fields[f + 4] = e;
+        refs[slot * REFS] = x;
+        refs[slot * REFS + 1] = y;
+        published.setRelease(slot, seq + 1);
+    }
+
+    /**
+     * Write events out until closed, then write what is left
+     */
+    private void drain(){
+        while(true){
+            boolean done = closing;
+            try {
+                int n = writeAvailable();
+                if(n == 0){
+                    flush();
+                    if(done)
+                        break;
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            } catch (IOException ioe){
+                ioError(ioe);
+                LockSupport.parkNanos(IDLE_NANOS * 1000);
+            } catch (RuntimeException re){
+                recordError(re);
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ioe){
+            ioError(ioe);
+        }
+    }
+
+    /**
+     * Encode every event published in order so far
+     *
+     * @return the number of events encoded
+     * @throws IOException if the file can't be written
+     */
+    private int writeAvailable() throws IOException {
+        long seq = tail;
+        long start = seq;
+        long lost = dropped.sumThenReset();
+        if(lost > 0)
+            encode(DROPPED, now(), 0, (int) Math.min(lost, Integer.MAX_VALUE),
+                    0, 0, 0, 0, null, null);
+        while(true){
+            int slot = (int) seq & mask;
+            if(published.getAcquire(slot) != seq + 1)
+                break;
+            int f = slot * FIELDS;
+            try {
+                encode(types[slot], times[slot], games[slot], fields[f],
+                        fields[f + 1], fields[f + 2], fields[f + 3],
+                        fields[f + 4], refs[slot * REFS],
+                        refs[slot * REFS + 1]);
+            } catch (RuntimeException re){
+                // skip the record rather than get stuck on it
+                recordError(re);
+            }
+            refs[slot * REFS] = null;
+            refs[slot * REFS + 1] = null;
+            seq++;
+            // give the slots back a batch at a time
+            if(((seq - start) & 0xFF) == 0)
+                tail = seq;
+        }
+        tail = seq;
+        return (int) (seq - start) + (lost > 0 ? 1 : 0);
+    }
+
+    /**
+     * Get the time now, in microseconds since the epoch
+     *
+     * @return the time
+     */
+    private long now(){
+        return startMicros + (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    /**
+     * Encode one record into the write buffer, writing the buffer out
+     * first if it is too full to hold it
+     *
+     * @param type the event type
+     * @param time the time of the event
+     * @param game the game
+     * @param a the first number field
+     * @param b the second number field
+     * @param c the third number field
+     * @param d the fourth number field
+     * @param e the fifth number field
+     * @param x the first object field
+     * @param y the second object field
+     * @throws IOException if the file can't be written
+     */
+    private void encode(byte type, long time, long game, int a, int b, int c,
+                        int d, int e, Object x, Object y) throws IOException {
+        int mark = buffer.position();
+        try {
+            try {
+                put(type, time, game, a, b, c, d, e, x, y);
+            } catch (BufferOverflowException boe){
+                buffer.position(mark);
+                flush();
+                mark = buffer.position();
+                put(type, time, game, a, b, c, d, e, x, y);
+            }
+        } catch (RuntimeException re){
+            // leave none of a record that couldn't be put
+            buffer.position(mark);
+            throw re;
+        }
+    }
+
+    /**
+     * Put one record into the write buffer
+     *
+     * @param type the event type
+     * @param time the time of the event
+     * @param game the game
+     * @param a the first number field
+     * @param b the second number field
+     * @param c the third number field
+     * @param d the fourth number field
+     * @param e the fifth number field
+     * @param x the first object field
+     * @param y the second object field
+     */
+    private void put(byte type, long time, long game, int a, int b, int c,
+                     int d, int e, Object x, Object y){
+        buffer.put(type).putLong(time).putLong(game);
+        switch(type){
+            case START:
+                putName((String) x);
+                putName((String) y);
+                break;
+            case BOARD:
+                int[] piles = (int[]) x;
+                // a board too big for the buffer is cut short
+                int n = Math.min(piles.length, WRITE_BUFFER / 4 - 64);
+                buffer.putInt(n);
+                for(int i = 0; i < n; i++)
+                    buffer.putInt(piles[i]);
+                break;
+            case MOVE:
+                buffer.put((byte) a).putInt(b).putInt(c).putInt(d).putInt(e);
+                break;
+            case INVALID:
+                buffer.put((byte) a).putInt(b).putInt(c).putInt(d);
+                break;
+            case WIN:
+                buffer.put((byte) a);
+                break;
+            case DROPPED:
+                buffer.putInt(a);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Put a player name into the write buffer, as a length and UTF-8
+     * bytes, cut short at a character past MAX_NAME bytes
+     *
+     * @param name the name, may be null
+     */
+    private void putName(String name){
+        byte[] bytes = name == null ? new byte[0]
+                : MoveJournal.nameBytes(name, MAX_NAME);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Write the buffer to the file, rotating the file first if it is
+     * full
+     *
+     * @throws IOException if the file can't be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        if(buffer.hasRemaining()){
+            if(written + buffer.remaining() > fileSize && written > HEADER)
+                rotate();
+            while(buffer.hasRemaining())
+                written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Open a fresh game.log, moving any old one out of the way
+     *
+     * @throws IOException if the file can't be opened
+     */
+    private void open() throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if(Files.exists(path))
+            shift();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while(header.hasRemaining())
+            channel.write(header);
+        written = HEADER;
+    }
+
+    /**
+     * Close the full file and start the next one
+     *
+     * @throws IOException if the files can't be moved or opened
+     */
+    private void rotate() throws IOException {
+        channel.close();
+        open();
+    }
+
+    /**
+     * Move game.log to game.log.1, every older file up one, and drop
+     * the oldest
+     *
+     * @throws IOException if the files can't be moved
+     */
+    private void shift() throws IOException {
+        Files.deleteIfExists(directory.resolve(FILE_NAME + "." + files));
+        for(int i = files - 1; i >= 1; i--){
+            Path from = directory.resolve(FILE_NAME + "." + i);
+            if(Files.exists(from))
+                Files.move(from, directory.resolve(FILE_NAME + "." + (i + 1)),
+                        StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(directory.resolve(FILE_NAME),
+                directory.resolve(FILE_NAME + ".1"),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Get the number of events dropped so far that the log hasn't
+     * recorded yet
+     *
+     * @return the count
+     */
+    public long dropped(){
+        return dropped.sum();
+    }
+
+    /**
+     * Stop taking events, write out the ones already taken and close
+     * the file
+     */
+    @Override
+    public void close(){
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handle IO exceptions while writing the log, the game goes on
+     * without it
+     *
+     * @param ioe the IOException
+     */
+    private static void ioError(IOException ioe){
+        System.err.println("GameLog: I/O error");
+        ioe.printStackTrace(System.err);
+    }
+
+    /**
+     * Report a record that couldn't be encoded, it is left out of the
+     * log and the writer carries on
+     *
+     * @param re the RuntimeException
+     */
+    private static void recordError(RuntimeException re){
+        System.err.println("GameLog: record left out");
+        re.printStackTrace(System.err);
+    }
+
+    /**
+     * Print a log file as text, one event per line
+     *
+     * @param args the log file
+     */
+    public static void main(String[] args) {
+        if(args.length != 1){
+            System.err.println("Usage: java GameLog log-file");
+            System.exit(1);
+        }
+        try (InputStream file = Files.newInputStream(Path.of(args[0]))) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(file));
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION){
+                System.err.println("GameLog: not a game log");
+                System.exit(1);
+            }
+            while(true){
+                int type;
+                try {
+                    type = in.readUnsignedByte();
+                } catch (EOFException eof){
+                    break;
+                }
+                System.out.println(readRecord((byte) type, in));
+            }
+        } catch (IOException ioe){
+            System.err.println("GameLog: I/O error");
+            ioe.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the rest of a record and describe it
+     *
+     * @param type the event type, already read
+     * @param in the log
+     * @return a line describing the record
+     * @throws IOException if the log can't be read or is cut short
+     */
+    private static String readRecord(byte type, DataInputStream in)
+            throws IOException {
+        long micros = in.readLong();
+        Instant time = Instant.ofEpochSecond(micros / 1_000_000,
+                (micros % 1_000_000) * 1_000);
+        String prefix = time + " game " + in.readLong() + " ";
+        switch(type){
+            case START:
+                return prefix + "start " + readName(in) + " vs. " +
+                        readName(in);
+            case BOARD:
+                StringBuilder piles = new StringBuilder(prefix + "piles:");
+                int n = in.readInt();
+                for(int i = 0; i < n; i++)
+                    piles.append(' ').append(in.readInt());
+                return piles.toString();
+            case MOVE:
+                return prefix + String.format("player %d move %d %d %d " +
+                                "checksum %d", in.readByte(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt());
+            case INVALID:
+                return prefix + String.format("player %d invalid move " +
+                                "%d %d %d", in.readByte(), in.readInt(),
+                        in.readInt(), in.readInt());
+            case WIN:
+                return prefix + "player " + in.readByte() + " won";
+            case RESTART:
+                return prefix + "restart";
+            case END:
+                return prefix + "end";
+            case DROPPED:
+                return prefix + "dropped " + in.readInt() + " events";
+            default:
+                throw new IOException("unknown event type " + type);
+        }
+    }
+
+    /**
+     * Read a player name
+     *
+     * @param in the log
+     * @return the name
+     * @throws IOException if the log can't be read
+     */
+    private static String readName(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * @filename GameRecovery.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Rebuilds unfinished games after the server restarts
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Snapshots the unfinished games next to their MoveJournal, and after a
+ * restart rebuilds them from the newest snapshot and the journal
+ * records that came after it.
+ *
+ * A snapshot starts by noting the journal's position, then copies each
+ * game under its lock along with the position of the game's own last
+ * record. Games keep moving while that happens, so recovery replays
+ * every record from the noted position on, but for each game skips the
+ * records at or before the one its copy already includes.
+ *
+ * Replay is done in parallel twice over. First each journal segment is
+ * decoded by its own task, which sorts the records into partitions by
+ * game id. Then each partition is replayed by its own task, taking the
+ * segments in order. A game's records all land in one partition, in
+ * journal order, so no two tasks ever touch the same game.
+ *
+ * Snapshot layout, big endian:
+ * <pre>
+ *   0  int   magic "NIMS"
+ *   4  int   format version
+ *   8  long  journal position the snapshot starts from
+ *  16  int   number of games
+ *  20  games:
+ *        long  game id
+ *        long  position of the game's last record
+ *        byte  whose turn it is
+ *        short, bytes  player1's name
+ *        short, bytes  player2's name
+ *        long  player1's session token
+ *        long  player2's session token
+ *        int, ints     original piles
+ *        int, ints     piles now
+ * </pre>
+ *
+ * A name's length is unsigned, and names are cut to MoveJournal.MAX_NAME
+ * bytes.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GameRecovery {
+
+    /** "NIMS" */
+    private static final int MAGIC = 0x4E494D53;
+
+    /**
+     * The layout described above. Older snapshots fail to load, and the
+     * games are replayed from the start of the journal instead
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /** Bytes before the first game */
+    private static final int HEADER = 20;
+
+    /** Prefix of snapshot file names */
+    private static final String PREFIX = "snapshot-";
+
+    /** Suffix of snapshot file names */
+    private static final String SUFFIX = ".ns";
+
+    /** Snapshots kept, in case the newest can't be read */
+    private static final int KEEP = 2;
+
+    /** Partitions per thread of the pool, to even out the work */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * Can't be made, everything is static
+     */
+    private GameRecovery(){}
+
+    /**
+     * Snapshot the unfinished games into the journal's directory
+     *
+     * @param directory the journal's directory
+     * @param journal the journal the games write to
+     * @param games the games, finished ones are left out
+     * @return the number of games in the snapshot
+     * @throws IOException if the snapshot can't be written
+     */
+    public static int snapshot(Path directory, MoveJournal journal,
+                               Collection<NimModel> games)
+            throws IOException {
+        long from = journal.position();
+        List<NimModel.Snapshot> snapshots = new ArrayList<>();
+        int bytes = HEADER;
+        for(NimModel game : games){
+            NimModel.Snapshot snapshot = game.snapshot();
+            if(snapshot == null)
+                continue;
+            snapshots.add(snapshot);
+            bytes += 8 + 8 + 1 + 2 + 2 +
+                    3 * snapshot.player1.length() +
+                    3 * snapshot.player2.length() + 8 + 8 +
+                    4 + 4 * snapshot.originalPiles.length +
+                    4 + 4 * snapshot.piles.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(from)
+                .putInt(snapshots.size());
+        for(NimModel.Snapshot snapshot : snapshots){
+            buffer.putLong(snapshot.id).putLong(snapshot.position)
+                    .put((byte) snapshot.turn);
+            putName(buffer, snapshot.player1);
+            putName(buffer, snapshot.player2);
+            buffer.putLong(snapshot.token1).putLong(snapshot.token2);
+            putPiles(buffer, snapshot.originalPiles);
+            putPiles(buffer, snapshot.piles);
+        }
+        buffer.flip();
+
+        Path path = directory.resolve(String.format("%s%016x%s", PREFIX,
+                from, SUFFIX));
+        Path temp = Files.createTempFile(directory, PREFIX, ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.WRITE)){
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> old = snapshots(directory);
+        for(int i = 0; i < old.size() - KEEP; i++)
+            Files.deleteIfExists(old.get(i));
+        return snapshots.size();
+    }
+
+    /**
+     * Put a player name into a snapshot, cut short the same as the
+     * journal does
+     *
+     * @param buffer the snapshot
+     * @param name the name
+     */
+    private static void putName(ByteBuffer buffer, String name){
+        byte[] bytes = MoveJournal.nameBytes(name);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Put a list of piles into a snapshot
+     *
+     * @param buffer the snapshot
+     * @param piles the piles
+     */
+    private static void putPiles(ByteBuffer buffer, int[] piles){
+        buffer.putInt(piles.length);
+        for(int pile : piles)
+            buffer.putInt(pile);
+    }
+
+    /**
+     * Rebuild the games that were unfinished when the server stopped
+     *
+     * @param directory the journal's directory
+     * @param pool the pool to replay on
+     * @return the state of each unfinished game
+     * @throws IOException if the journal or snapshots can't be read
+     */
+    public static List<NimModel.Snapshot> recover(Path directory,
+                                                  ForkJoinPool pool)
+            throws IOException {
+        int partitions = pool.getParallelism() * PARTITIONS_PER_THREAD;
+        List<Map<Long, Replay>> games = new ArrayList<>(partitions);
+        for(int i = 0; i < partitions; i++)
+            games.add(new HashMap<>());
+
+        // start from the newest snapshot that can be read
+        long from = 0;
+        List<Path> snapshots = snapshots(directory);
+        for(int i = snapshots.size() - 1; i >= 0; i--){
+            try {
+                from = load(snapshots.get(i), games);
+                break;
+            } catch (IOException ioe){
+                System.err.printf("GameRecovery: skipping %s: %s\n",
+                        snapshots.get(i), ioe.getMessage());
+                for(Map<Long, Replay> partition : games)
+                    partition.clear();
+            }
+        }
+
+        // decode the segments from the snapshot on, a task each
+        List<Callable<List<List<Entry>>>> decoders = new ArrayList<>();
+        long firstSegment = from >>> 32;
+        long since = from;
+        for(Path segment : MoveJournal.segments(directory)){
+            if(MoveJournal.segmentNumber(segment) >= firstSegment)
+                decoders.add(() -> decode(segment, since, partitions));
+        }
+        List<List<List<Entry>>> decoded = new ArrayList<>();
+        for(Future<List<List<Entry>>> future : pool.invokeAll(decoders))
+            decoded.add(join(future));
+
+        // replay each partition in journal order, a task each
+        List<Callable<List<NimModel.Snapshot>>> replayers = new ArrayList<>();
+        for(int i = 0; i < partitions; i++){
+            int partition = i;
+            replayers.add(() -> replay(games.get(partition), decoded,
+                    partition));
+        }
+        List<NimModel.Snapshot> recovered = new ArrayList<>();
+        for(Future<List<NimModel.Snapshot>> future : pool.invokeAll(replayers))
+            recovered.addAll(join(future));
+        return recovered;
+    }
+
+    /**
+     * Get the result of a finished task
+     *
+     * @param future the task
+     * @param <T> the type of result
+     * @return the result
+     * @throws IOException if the task failed
+     */
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee){
+            if(ee.getCause() instanceof IOException)
+                throw (IOException) ee.getCause();
+            throw new IOException(ee.getCause());
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IOException(ie);
+        }
+    }
+
+    /**
+     * List the snapshots in a directory, oldest first
+     *
+     * @param directory the directory
+     * @return the snapshot files
+     * @throws IOException if the directory can't be read
+     */
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if(!Files.isDirectory(directory))
+            return snapshots;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                PREFIX + "*" + SUFFIX)){
+            for(Path file : files)
+                snapshots.add(file);
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+
+    /**
+     * Load a snapshot into the partitions
+     *
+     * @param path the snapshot file
+     * @param games the partitions to load into
+     * @return the journal position the snapshot starts from
+     * @throws IOException if the file can't be read or is damaged
+     */
+    private static long load(Path path, List<Map<Long, Replay>> games)
+            throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)){
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if(map.capacity() < HEADER || map.getInt() != MAGIC ||
+                map.getInt() != FORMAT_VERSION)
+            throw new IOException("not a snapshot");
+        try {
+            long from = map.getLong();
+            int count = map.getInt();
+            for(int i = 0; i < count; i++){
+                Replay game = new Replay(map.getLong());
+                game.position = map.getLong();
+                game.turn = map.get();
+                game.player1 = getName(map);
+                game.player2 = getName(map);
+                game.token1 = map.getLong();
+                game.token2 = map.getLong();
+                game.originalPiles = getPiles(map);
+                game.piles = new PileArray(getPiles(map));
+                games.get(partition(game.id, games.size()))
+                        .put(game.id, game);
+            }
+            return from;
+        } catch (RuntimeException re){
+            throw new IOException("damaged snapshot", re);
+        }
+    }
+
+    /**
+     * Read a player name from a snapshot
+     *
+     * @param buffer the snapshot
+     * @return the name
+     */
+    private static String getName(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a list of piles from a snapshot
+     *
+     * @param buffer the snapshot
+     * @return the piles
+     */
+    private static int[] getPiles(ByteBuffer buffer){
+        int[] piles = new int[buffer.getInt()];
+        for(int i = 0; i < piles.length; i++)
+            piles[i] = buffer.getInt();
+        return piles;
+    }
+
+    /**
+     * Find the partition of a game
+     *
+     * @param game the game id
+     * @param partitions the number of partitions
+     * @return the partition
+     */
+    private static int partition(long game, int partitions){
+        return Math.floorMod(Long.hashCode(game), partitions);
+    }
+
+    /**
+     * Decode a journal segment, sorting its records into partitions
+     *
+     * @param segment the segment file
+     * @param from records before this position are left out
+     * @param partitions the number of partitions
+     * @return the records of each partition, in journal order
+     * @throws IOException if the segment can't be read
+     */
+    private static List<List<Entry>> decode(Path segment, long from,
+                                            int partitions)
+            throws IOException {
+        List<List<Entry>> sorted = new ArrayList<>(partitions);
+        for(int i = 0; i < partitions; i++)
+            sorted.add(new ArrayList<>());
+        MoveJournal.read(segment, new MoveJournal.Visitor() {
+
+            /**
+             * Keep a game start
+             *
+             * @param position the position of the record
+             * @param game the game id
+             * @param player1 the name of player1
+             * @param player2 the name of player2
+             * @param token1 player1's session token, or 0
+             * @param token2 player2's session token, or 0
+             * @param piles the original piles
+             */
+            @Override
+            public void start(long position, long game, String player1,
+                              String player2, long token1, long token2,
+                              int[] piles) {
+                if(position < from)
+                    return;
+                Entry entry = new Entry(position, game, MoveJournal.START);
+                entry.player1 = player1;
+                entry.player2 = player2;
+                entry.token1 = token1;
+                entry.token2 = token2;
+                entry.piles = piles;
+                sorted.get(partition(game, partitions)).add(entry);
+            }
+
+            /**
+             * Keep a move
+             *
+             * @param position the position of the record
+             * @param game the game id
+             * @param pile the pile number (zero indexed)
+             * @param start the start amount taken
+             * @param amount the amount taken from the start index
+             */
+            @Override
+            public void move(long position, long game, int pile, int start,
+                             int amount) {
+                if(position < from)
+                    return;
+                Entry entry = new Entry(position, game, MoveJournal.MOVE);
+                entry.pile = pile;
+                entry.start = start;
+                entry.amount = amount;
+                sorted.get(partition(game, partitions)).add(entry);
+            }
+
+            /**
+             * Keep a restart
+             *
+             * @param position the position of the record
+             * @param game the game id
+             */
+            @Override
+            public void newGame(long position, long game) {
+                if(position >= from)
+                    sorted.get(partition(game, partitions)).add(
+                            new Entry(position, game, MoveJournal.NEW_GAME));
+            }
+
+            /**
+             * Keep a game end
+             *
+             * @param position the position of the record
+             * @param game the game id
+             */
+            @Override
+            public void quit(long position, long game) {
+                if(position >= from)
+                    sorted.get(partition(game, partitions)).add(
+                            new Entry(position, game, MoveJournal.QUIT));
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Replay one partition's records over its games from the snapshot
+     *
+     * @param games the partition's games from the snapshot, changed
+     * @param decoded the records of every segment, by partition
+     * @param partition the partition
+     * @return the state of the partition's unfinished games
+     */
+    private static List<NimModel.Snapshot> replay(Map<Long, Replay> games,
+                                                  List<List<List<Entry>>> decoded,
+                                                  int partition){
+        for(List<List<Entry>> segment : decoded){
+            for(Entry entry : segment.get(partition)){
+                Replay game = games.get(entry.game);
+                if(entry.type == MoveJournal.START){
+                    if(game == null){
+                        game = new Replay(entry.game);
+                        game.player1 = entry.player1;
+                        game.player2 = entry.player2;
+                        game.token1 = entry.token1;
+                        game.token2 = entry.token2;
+                        game.originalPiles = entry.piles;
+                        game.piles = new PileArray(entry.piles);
+                        game.turn = 1;
+                        game.position = entry.position;
+                        games.put(entry.game, game);
+                    }
+                    continue;
+                }
+                if(game == null || entry.position <= game.position)
+                    continue;
+                game.position = entry.position;
+                if(entry.type == MoveJournal.MOVE){
+                    game.piles.apply(entry.pile, entry.start, entry.amount);
+                    // the turn doesn't pass on the move that ends a game
+                    if(game.piles.size() > 0)
+                        game.turn = 3 - game.turn;
+                } else if(entry.type == MoveJournal.NEW_GAME){
+                    game.piles.reset(game.originalPiles);
+                    game.turn = 1;
+                } else {
+                    games.remove(entry.game);
+                }
+            }
+        }
+
+        List<NimModel.Snapshot> recovered = new ArrayList<>(games.size());
+        for(Replay game : games.values())
+            recovered.add(new NimModel.Snapshot(game.id, game.player1,
+                    game.player2, game.token1, game.token2,
+                    game.originalPiles, game.piles.toArray(), game.turn,
+                    game.position));
+        return recovered;
+    }
+
+    /**
+     * A game being rebuilt
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Replay {
+
+        /** The game id */
+        final long id;
+
+        /** player1's name */
+        String player1;
+
+        /** player2's name */
+        String player2;
+
+        /** player1's session token, or 0 */
+        long token1;
+
+        /** player2's session token, or 0 */
+        long token2;
+
+        /** The piles every round starts from */
+        int[] originalPiles;
+
+        /** The piles so far */
+        PileArray piles;
+
+        /** Whose turn it is, 1 or 2 */
+        int turn;
+
+        /** Position of the last record applied */
+        long position;
+
+        /**
+         * Start rebuilding a game
+         *
+         * @param id the game id
+         */
+        Replay(long id){
+            this.id = id;
+        }
+    }
+
+    /**
+     * A journal record waiting to be replayed
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Entry {
+
+        /** Position of the record */
+        final long position;
+
+        /** The game id */
+        final long game;
+
+        /** The record type */
+        final byte type;
+
+        /** player1's name, for a start */
+        String player1;
+
+        /** player2's name, for a start */
+        String player2;
+
+        /** player1's session token, for a start */
+        long token1;
+
+        /** player2's session token, for a start */
+        long token2;
+
+        /** The original piles, for a start */
+        int[] piles;
+
+        /** The pile number, for a move */
+        int pile;
+
+        /** The start amount taken, for a move */
+        int start;
+
+        /** The amount taken, for a move */
+        int amount;
+
+        /**
+         * Make a record
+         *
+         * @param position position of the record
+         * @param game the game id
+         * @param type the record type
+         */
+        Entry(long position, long game, byte type){
+            this.position = position;
+            this.game = game;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * @filename GrundyBuilder.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Computes Grundy values, in parallel for big pile sizes
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fills in the Grundy table for GrundySolver. It keeps the set of values
+ * G(a) ^ G(b) reachable so far as a bitset, and G(n) is the mex of that
+ * set once every pair with a + b = n - 1 has been added.
+ *
+ * Small pile sizes are done one at a time. Past PARALLEL_FROM sizes are
+ * done in blocks [n0, n1). Every pair of a block whose piles are both
+ * below n0 only needs values that are already known, so those pairs are
+ * split over a fork/join pool. Each task only reports values the set
+ * doesn't already have, along with the sum where it first saw them, so
+ * the tasks only read the shared bitset. The few pairs that use a value
+ * from inside the block, at most n1 - n0 per size, are then walked in
+ * order along with the reported values to find each mex.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GrundyBuilder {
+
+    /**
+     * Told how far a build has got
+     */
+    public interface Progress {
+
+        /**
+         * Report that more of the table is done, the last report of a
+         * build has done equal to total
+         *
+         * @param done pile sizes computed so far, in this build
+         * @param total pile sizes this build will compute
+         */
+        void progress(int done, int total);
+    }
+
+    /** Pile sizes below this are always done one at a time */
+    private static final int PARALLEL_FROM = 8192;
+
+    /** A block is this fraction of the sizes already known */
+    private static final int BLOCK_DIVISOR = 256;
+
+    /** Smallest block */
+    private static final int MIN_BLOCK = 64;
+
+    /** Pairs a task checks itself rather than splitting further */
+    private static final long LEAF_PAIRS = 1 << 18;
+
+    /** Sizes done one at a time between progress reports */
+    private static final int REPORT_EVERY = 1024;
+
+    /** The pool blocks are split over */
+    private final ForkJoinPool pool;
+
+    /** Values of G(a) ^ G(b) reachable so far, as a bitset */
+    private long[] reachable;
+
+    /** Smallest value not in reachable */
+    private int mex;
+
+    /** Largest value in the table */
+    private int maxValue;
+
+    /** Told how far a build has got, or null */
+    private volatile Progress progress;
+
+    /** Pairs checked so far */
+    private long pairs;
+
+    /** Blocks done in parallel so far */
+    private long blocks;
+
+    /** Nanoseconds spent in the parallel part of blocks */
+    private long parallelNanos;
+
+    /** Nanoseconds spent on everything else */
+    private long sequentialNanos;
+
+    /**
+     * Create a builder for an empty table
+     *
+     * @param pool the pool to split blocks over
+     */
+    public GrundyBuilder(ForkJoinPool pool){
+        this(pool, new long[1], 0, 0);
+    }
+
+    /**
+     * Create a builder that carries on from a saved table
+     *
+     * @param pool the pool to split blocks over
+     * @param reachable the reachable set of the saved table
+     * @param mex the mex of the reachable set
+     * @param maxValue the largest value in the saved table
+     */
+    public GrundyBuilder(ForkJoinPool pool, long[] reachable, int mex,
+                         int maxValue){
+        this.pool = pool;
+        this.reachable = reachable;
+        this.mex = mex;
+        this.maxValue = maxValue;
+    }
+
+    /**
+     * Set who is told how far a build has got
+     *
+     * @param progress the listener, or null
+     */
+    public void setProgress(Progress progress){
+        this.progress = progress;
+    }
+
+    /**
+     * Compute values for pile sizes from up to, not including, to
+     *
+     * @param values the table, filled in below from
+     * @param from the first size to compute
+     * @param to one past the last size to compute
+     */
+    public synchronized void extend(int[] values, int from, int to){
+        int n = from;
+        while(n < to){
+            int end;
+            if(n < PARALLEL_FROM || pool.getParallelism() == 1){
+                end = Math.min(to, n + REPORT_EVERY);
+                long start = System.nanoTime();
+                for(; n < end; n++)
+                    values[n] = next(values, n);
+                sequentialNanos += System.nanoTime() - start;
+            } else {
+                end = Math.min(to, n + Math.max(MIN_BLOCK,
+                        n / BLOCK_DIVISOR));
+                block(values, n, end);
+                n = end;
+            }
+            Progress p = progress;
+            if(p != null && n < to)
+                p.progress(n - from, to - from);
+        }
+
+        // the last report of a build is always the whole of it
+        Progress p = progress;
+        if(p != null && from < to)
+            p.progress(to - from, to - from);
+    }
+
+    /**
+     * Compute the value of pile n from the values of all smaller piles
+     *
+     * @param values the values, filled in below n
+     * @param n the pile size
+     * @return the Grundy value of pile n
+     */
+    private int next(int[] values, int n){
+        if(n == 0)
+            return 0;
+        long[] r = fit();
+
+        // the options that pile n has and pile n - 1 didn't
+        int sum = n - 1;
+        for(int a = 0, b = sum; a <= b; a++, b--){
+            int v = values[a] ^ values[b];
+            r[v >>> 6] |= 1L << v;
+        }
+        pairs += sum / 2 + 1;
+        return advance();
+    }
+
+    /**
+     * Compute the values of a block of pile sizes
+     *
+     * @param values the values, filled in below n0
+     * @param n0 the first size of the block
+     * @param n1 one past the last size of the block
+     */
+    private void block(int[] values, int n0, int n1){
+        long start = System.nanoTime();
+        long[] r = fit();
+        Hits hits = pool.invoke(new PairTask(values, r, n0, n0 - 1, n1 - 1));
+        long split = System.nanoTime();
+        parallelNanos += split - start;
+        pairs += hits.pairs;
+        blocks++;
+
+        // sort what the tasks found by the sum it was found at
+        int[] offsets = new int[n1 - n0 + 1];
+        for(int i = 0; i < hits.size; i++)
+            offsets[hits.sums[i] - (n0 - 1) + 1]++;
+        for(int i = 1; i < offsets.length; i++)
+            offsets[i] += offsets[i - 1];
+        int[] bySum = new int[hits.size];
+        int[] fill = Arrays.copyOf(offsets, offsets.length);
+        for(int i = 0; i < hits.size; i++)
+            bySum[fill[hits.sums[i] - (n0 - 1)]++] = hits.values[i];
+
+        for(int n = n0; n < n1; n++){
+            int sum = n - 1;
+            r = fit();
+
+            // values only pairs below n0 reach, first reached here
+            for(int i = offsets[sum - (n0 - 1)];
+                i < offsets[sum - (n0 - 1) + 1]; i++)
+                r[bySum[i] >>> 6] |= 1L << bySum[i];
+
+            // pairs that use a value from this block
+            for(int a = 0, b = sum; a <= b && b >= n0; a++, b--){
+                int v = values[a] ^ values[b];
+                r[v >>> 6] |= 1L << v;
+                pairs++;
+            }
+            values[n] = advance();
+        }
+        sequentialNanos += System.nanoTime() - split;
+    }
+
+    /**
+     * Make sure the bitset can hold the xor of any two values so far
+     *
+     * @return the bitset
+     */
+    private long[] fit(){
+        // a ^ b can't have a higher bit than the largest value so far
+        int top = Integer.highestOneBit(Math.max(1, maxValue)) << 1;
+        if((top >>> 6) >= reachable.length)
+            reachable = Arrays.copyOf(reachable, (top >>> 6) + 1);
+        return reachable;
+    }
+
+    /**
+     * Move the mex past every value now reachable
+     *
+     * @return the new mex, the value of the pile just finished
+     */
+    private int advance(){
+        while(isMarked(mex))
+            mex++;
+        maxValue = Math.max(maxValue, mex);
+        return mex;
+    }
+
+    /**
+     * Check if a value is in the reachable set
+     *
+     * @param value the value
+     * @return true if it is
+     */
+    private boolean isMarked(int value){
+        int word = value >>> 6;
+        return word < reachable.length &&
+                (reachable[word] & (1L << value)) != 0;
+    }
+
+    /**
+     * Get the reachable set, for saving
+     *
+     * @return the bitset
+     */
+    public synchronized long[] reachable(){
+        return reachable;
+    }
+
+    /**
+     * Get the mex of the reachable set, for saving
+     *
+     * @return the mex
+     */
+    public synchronized int mex(){
+        return mex;
+    }
+
+    /**
+     * Get the largest value so far, for saving
+     *
+     * @return the largest value
+     */
+    public synchronized int maxValue(){
+        return maxValue;
+    }
+
+    /**
+     * Describe how the builds so far went
+     *
+     * @return a line of counters
+     */
+    public synchronized String stats(){
+        return String.format("%d pairs, %d parallel blocks, " +
+                        "%.3fs parallel, %.3fs sequential, parallelism %d",
+                pairs, blocks, parallelNanos / 1e9, sequentialNanos / 1e9,
+                pool.getParallelism());
+    }
+
+    /**
+     * Values a task found that weren't reachable yet, each with the
+     * first sum it was found at
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Hits {
+
+        /** The values found */
+        int[] values = new int[16];
+
+        /** The sum each value was found at */
+        int[] sums = new int[16];
+
+        /** How many were found */
+        int size;
+
+        /** Pairs checked */
+        long pairs;
+
+        /**
+         * Record a value
+         *
+         * @param value the value
+         * @param sum the sum it was found at
+         */
+        void add(int value, int sum){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+                sums = Arrays.copyOf(sums, size * 2);
+            }
+            values[size] = value;
+            sums[size] = sum;
+            size++;
+        }
+
+        /**
+         * Add another task's findings to these
+         *
+         * @param other the other findings
+         * @return these findings
+         */
+        Hits merge(Hits other){
+            for(int i = 0; i < other.size; i++)
+                add(other.values[i], other.sums[i]);
+            pairs += other.pairs;
+            return this;
+        }
+    }
+
+    /**
+     * Checks the pairs of a range of sums whose piles are both below
+     * the start of the block
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class PairTask extends RecursiveTask<Hits> {
+
+        /** Version of the task's serialized form, it is never written */
+        private static final long serialVersionUID = 1L;
+
+        /** The values, read only while tasks run */
+        private final int[] values;
+
+        /** The reachable set, read only while tasks run */
+        private final long[] reachable;
+
+        /** The start of the block */
+        private final int n0;
+
+        /** The first sum to check */
+        private final int from;
+
+        /** One past the last sum to check */
+        private final int to;
+
+        /**
+         * Create a task over a range of sums
+         *
+         * @param values the values
+         * @param reachable the reachable set
+         * @param n0 the start of the block
+         * @param from the first sum to check
+         * @param to one past the last sum to check
+         */
+        PairTask(int[] values, long[] reachable, int n0, int from, int to){
+            this.values = values;
+            this.reachable = reachable;
+            this.n0 = n0;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Check the pairs, splitting the range while it is big
+         *
+         * @return the values found
+         */
+        @Override
+        protected Hits compute(){
+            if(to - from > 1 && (long) (to - from) * (n0 / 2) > LEAF_PAIRS){
+                int mid = (from + to) >>> 1;
+                PairTask right = new PairTask(values, reachable, n0, mid, to);
+                right.fork();
+                Hits left = new PairTask(values, reachable, n0, from, mid)
+                        .compute();
+                return left.merge(right.join());
+            }
+
+            Hits hits = new Hits();
+            long[] seen = new long[reachable.length];
+            for(int sum = from; sum < to; sum++){
+                // b = sum - a has to stay below n0
+                int a = Math.max(0, sum - n0 + 1);
+                int b = sum - a;
+                hits.pairs += Math.max(0, b - a + 2) / 2;
+                for(; a <= b; a++, b--){
+                    int v = values[a] ^ values[b];
+                    long bit = 1L << v;
+                    int word = v >>> 6;
+                    if((reachable[word] & bit) == 0 && (seen[word] & bit) == 0){
+                        seen[word] |= bit;
+                        hits.add(v, sum);
+                    }
+                }
+            }
+            return hits;
+        }
+    }
+}
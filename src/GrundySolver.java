@@ -0,0 +1,419 @@
+/*
+ * @filename GrundySolver.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Evaluates positions of the Game of Nim played by NimModel
+ */
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Solves the game NimModel plays. A move takes a run of sticks from
+ * anywhere in a pile and leaves up to two piles behind, so a pile of n
+ * can become any two piles a and b with a + b < n. That makes every pile
+ * worth a Grundy value, the mex of G(a) ^ G(b) over those a and b, and
+ * a position worth the xor of its piles.
+ *
+ * For this move set G(n) = n. Leaving a = 0 and b = k reaches every
+ * value k < n, and since a ^ b <= a + b < n no option is worth n, so
+ * the mex is n. grundy answers that directly, and the search for a
+ * winning move relies on it.
+ *
+ * The table is still there to check the identity against, and for
+ * the table file and GrundyBuilder to be measured with. Its values are
+ * computed once. Every option of pile n-1
+ * is also an option of pile n, so the set of reachable values only
+ * grows, and finding G(n) only needs the new pairs with a + b = n - 1.
+ * That is O(n) per pile size instead of O(n^2). Given a file, the table
+ * is loaded from and saved back to it, see GrundyTableFile. Big tables
+ * are computed in parallel, see GrundyBuilder.
+ *
+ * NimModel makes the player who takes the last stick lose, so winning
+ * moves follow the misere rule: play as in normal play, except when
+ * the move would leave only piles worth 0 or 1, then leave an odd
+ * number of them worth 1.
+ *
+ * Given a TranspositionTable, winning moves are remembered by position,
+ * so a board every game starts from is only ever searched once.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GrundySolver {
+
+    /** Smallest table ever built */
+    private static final int MIN_SIZE = 64;
+
+    /** The computed values, replaced whenever the table grows */
+    private volatile Table table;
+
+    /** Computes the values */
+    private GrundyBuilder builder;
+
+    /** Where the table is kept between runs, or null */
+    private final GrundyTableFile file;
+
+    /** Remembers winning moves by position, or null */
+    private final TranspositionTable cache;
+
+    /** Bits of each number of a move kept in the cache */
+    private static final int MOVE_BITS = 21;
+
+    /** Largest number a move can have and still be cached */
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+
+    /** Cached for a position without a winning move */
+    private static final long NO_MOVE = -1;
+
+    /**
+     * Create a solver with a small table, it grows when asked about
+     * bigger piles
+     */
+    public GrundySolver(){
+        this(null);
+    }
+
+    /**
+     * Create a solver that starts from the table in a file, and saves
+     * the table back there whenever it grows
+     *
+     * @param path the table file, made if it doesn't exist, or null to
+     * keep the table in memory only
+     */
+    public GrundySolver(Path path){
+        this(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a solver that computes big tables on a given pool
+     *
+     * @param path the table file, made if it doesn't exist, or null to
+     * keep the table in memory only
+     * @param pool the pool to compute on, parallelism 1 computes
+     * everything on the calling thread
+     */
+    public GrundySolver(Path path, ForkJoinPool pool){
+        this(path, pool, null);
+    }
+
+    /**
+     * Create a solver that remembers the winning moves it finds
+     *
+     * @param path the table file, made if it doesn't exist, or null to
+     * keep the table in memory only
+     * @param pool the pool to compute on, parallelism 1 computes
+     * everything on the calling thread
+     * @param cache where to remember winning moves, or null to search
+     * every time
+     */
+    public GrundySolver(Path path, ForkJoinPool pool,
+                        TranspositionTable cache){
+        this.cache = cache;
+        file = path == null ? null : new GrundyTableFile(path);
+        table = new Table(IntBuffer.allocate(0), 0);
+        builder = new GrundyBuilder(pool);
+        if(file != null){
+            try {
+                GrundyTableFile.Contents contents = file.load();
+                if(contents != null){
+                    builder = new GrundyBuilder(pool, contents.reachable,
+                            contents.mex, contents.maxValue);
+                    table = new Table(contents.values, contents.count);
+                }
+            } catch (IOException ioe){
+                tableError(ioe);
+            }
+        }
+        ensure(MIN_SIZE);
+    }
+
+    /**
+     * Set who is told how far computing the table has got
+     *
+     * @param progress the listener, or null
+     */
+    public void setProgress(GrundyBuilder.Progress progress){
+        builder.setProgress(progress);
+    }
+
+    /**
+     * Describe the work done computing the table
+     *
+     * @return a line of counters
+     */
+    public String stats(){
+        return builder.stats();
+    }
+
+    /**
+     * Make sure the table covers a pile size, computing whatever
+     * values are missing
+     *
+     * @param pile the largest pile size wanted
+     */
+    public final void ensure(int pile){
+        if(pile < table.size)
+            return;
+        synchronized (this){
+            Table old = table;
+            if(pile < old.size)
+                return;
+            int size = (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(pile + 1L, 2L * old.size));
+            int[] values = new int[size];
+            old.values.get(0, values, 0, old.size);
+            builder.extend(values, old.size, size);
+            table = save(values);
+        }
+    }
+
+    /**
+     * Make a table out of freshly computed values, keeping it in the
+     * file if there is one
+     *
+     * @param values the values
+     * @return the table
+     */
+    private Table save(int[] values){
+        if(file != null){
+            try {
+                GrundyTableFile.Contents contents =
+                        file.save(values, builder.reachable(),
+                                builder.mex(), builder.maxValue());
+                return new Table(contents.values, contents.count);
+            } catch (IOException ioe){
+                tableError(ioe);
+            }
+        }
+        return new Table(IntBuffer.wrap(values), values.length);
+    }
+
+    /**
+     * Report that the table file couldn't be used, the solver carries
+     * on with a table of its own
+     *
+     * @param ioe the IOException
+     */
+    private static void tableError(IOException ioe){
+        System.err.println("GrundySolver: table file not used");
+        ioe.printStackTrace(System.err);
+    }
+
+    /**
+     * Get the Grundy value of a pile
+     *
+     * @param pile the pile size
+     * @return the Grundy value
+     */
+    public int grundy(int pile){
+        return pile;
+    }
+
+    /**
+     * Get the Grundy value of a pile from the table, computing it if it
+     * isn't there yet. It is always the pile size, see grundy.
+     *
+     * @param pile the pile size
+     * @return the Grundy value in the table
+     */
+    public int tableValue(int pile){
+        ensure(pile);
+        return table.values.get(pile);
+    }
+
+    /**
+     * Get the number of pile sizes the table covers right now
+     *
+     * @return one more than the largest pile size computed
+     */
+    public int size(){
+        return table.size;
+    }
+
+    /**
+     * Get the xor of the Grundy values of every pile
+     *
+     * @param piles the piles
+     * @return the value of the position in normal play
+     */
+    public int value(int[] piles){
+        int x = 0;
+        for(int pile : piles)
+            x ^= grundy(pile);
+        return x;
+    }
+
+    /**
+     * Check if the player to move wins with best play
+     *
+     * @param piles the piles
+     * @return true if the player to move can force a win
+     */
+    public boolean isWinning(int[] piles){
+        int x = 0;
+        boolean big = false;
+        for(int pile : piles){
+            int g = grundy(pile);
+            x ^= g;
+            big |= g > 1;
+        }
+        return big ? x != 0 : x == 0;
+    }
+
+    /**
+     * Get the table winning moves are remembered in, for others that
+     * want to share it
+     *
+     * @return the table, or null
+     */
+    public TranspositionTable cache(){
+        return cache;
+    }
+
+    /**
+     * Find a winning move
+     *
+     * @param piles the piles
+     * @return {pile, start, amount} as NimModel.moveRequest takes them,
+     * or null if every move loses
+     */
+    public int[] winningMove(int[] piles){
+        return winningMove(piles, cache == null ? 0 : Piles.key(piles));
+    }
+
+    /**
+     * Find a winning move, from the cache if it has been found before.
+     * The cache keeps the size of the pile moved rather than where it
+     * is, so the move fits every order of the same piles.
+     *
+     * @param piles the piles
+     * @param key the key of the piles, see Piles.key
+     * @return {pile, start, amount} as NimModel.moveRequest takes them,
+     * or null if every move loses
+     */
+    public int[] winningMove(int[] piles, long key){
+        if(cache == null)
+            return search(piles);
+        long cached = cache.get(key);
+        if(cached == NO_MOVE)
+            return null;
+        if(cached != TranspositionTable.MISSING){
+            int size = (int) (cached >>> 2 * MOVE_BITS);
+            for(int i = 0; i < piles.length; i++)
+                if(piles[i] == size)
+                    return new int[]{i, (int) (cached >>> MOVE_BITS)
+                            & MOVE_MASK, (int) cached & MOVE_MASK};
+        }
+        int[] move = search(piles);
+        if(move == null) {
+            cache.put(key, NO_MOVE, piles.length);
+        } else if(piles[move[0]] <= MOVE_MASK) {
+            cache.put(key, (long) piles[move[0]] << 2 * MOVE_BITS
+                    | (long) move[1] << MOVE_BITS | move[2],
+                    piles.length + piles[move[0]]);
+        }
+        return move;
+    }
+
+    /**
+     * Search for a winning move
+     *
+     * @param piles the piles
+     * @return {pile, start, amount}, or null if every move loses
+     */
+    private int[] search(int[] piles){
+        int x = 0, bigCount = 0, bigPile = -1;
+        for(int i = 0; i < piles.length; i++){
+            int g = grundy(piles[i]);
+            x ^= g;
+            if(g > 1){
+                bigCount++;
+                bigPile = i;
+            }
+        }
+        // only piles worth 0 or 1 left, leave an odd number worth 1
+        if(bigCount == 0){
+            if(x != 0)
+                return null;
+            for(int i = 0; i < piles.length; i++)
+                if(piles[i] > 0)
+                    return new int[]{i, 0, piles[i]};
+            return null;
+        }
+
+        // one big pile, break it so the rest is worth 0 or 1 and odd
+        if(bigCount == 1){
+            int rest = x ^ grundy(piles[bigPile]);
+            return split(piles, bigPile, rest, true);
+        }
+
+        // normal play, bring the xor to zero
+        if(x == 0)
+            return null;
+        for(int i = 0; i < piles.length; i++){
+            int g = grundy(piles[i]);
+            if((g ^ x) < g){
+                int[] move = split(piles, i, x, false);
+                if(move != null)
+                    return move;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a way to break a pile into a and b, each worth its own size
+     *
+     * @param piles the piles
+     * @param i the pile to break
+     * @param x the xor the pieces must cancel, for the normal play
+     * case, or the xor of the other piles for the misere case
+     * @param misere true to leave only piles worth 0 or 1 and an odd xor
+     * @return the move, or null if there isn't one
+     */
+    private static int[] split(int[] piles, int i, int x,
+                               boolean misere){
+        int p = piles[i];
+        int target = misere ? x ^ 1 : p ^ x;
+        for(int a = 0; a < p; a++){
+            if(misere && a > 1)
+                break;
+            int b = a ^ target;
+            if(misere && b > 1)
+                continue;
+            if(a + b < p)
+                return new int[]{i, a, p - a - b};
+        }
+        return null;
+    }
+
+    /**
+     * An immutable snapshot of the table
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Table {
+
+        /** Grundy value of each pile size */
+        final IntBuffer values;
+
+        /** Number of pile sizes in the table */
+        final int size;
+
+        /**
+         * Index a table of values
+         *
+         * @param values the values, on the heap or mapped from a file
+         * @param size the number of pile sizes
+         */
+        Table(IntBuffer values, int size){
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * @filename GrundyTableFile.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * On disk cache of the Grundy value table
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps a GrundySolver table in a file so it is computed once per host
+ * rather than once per server start. The file is memory mapped read
+ * only, so every process on the host shares the same pages instead of
+ * holding its own copy on the heap.
+ *
+ * The file is never changed in place. A bigger table is written to a
+ * new file that is renamed over the old one, so a process still reading
+ * the old mapping is never disturbed. Along with the values the file
+ * keeps the solver's reachable set, which is all it needs to carry on
+ * from where the file ends.
+ *
+ * Layout, big endian:
+ * <pre>
+ *   0  int   magic "NIMG"
+ *   4  int   format version
+ *   8  int   number of pile sizes
+ *  12  int   mex of the reachable set
+ *  16  int   largest value
+ *  20  int   length of the reachable set in longs
+ *  24  long  reserved
+ *  32  int[] values
+ *      long[] reachable set
+ * </pre>
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class GrundyTableFile {
+
+    /** "NIMG" */
+    private static final int MAGIC = 0x4E494D47;
+
+    /** The layout described above */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Bytes before the values */
+    private static final int HEADER = 32;
+
+    /** Where the table lives */
+    private final Path path;
+
+    /**
+     * Create a handle on a table file, which doesn't have to exist yet
+     *
+     * @param path where the table lives
+     */
+    public GrundyTableFile(Path path){
+        this.path = path;
+    }
+
+    /**
+     * Map the table
+     *
+     * @return the table, or null if there is no file yet
+     * @throws IOException if the file can't be read or isn't a table
+     */
+    public Contents load() throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)){
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (NoSuchFileException missing){
+            return null;
+        }
+        if(map.capacity() < HEADER || map.getInt(0) != MAGIC)
+            throw new IOException(path + " is not a Grundy table");
+        if(map.getInt(4) != FORMAT_VERSION)
+            throw new IOException(path + " has format version " +
+                    map.getInt(4) + ", expected " + FORMAT_VERSION);
+
+        int count = map.getInt(8);
+        int words = map.getInt(20);
+        long expected = HEADER + 4L * count + 8L * words;
+        if(map.capacity() != expected)
+            throw new IOException(path + " is truncated");
+
+        IntBuffer values = map.slice(HEADER, 4 * count).asIntBuffer();
+        long[] reachable = new long[Math.max(1, words)];
+        map.slice(HEADER + 4 * count, 8 * words).asLongBuffer()
+                .get(reachable, 0, words);
+        return new Contents(values, count, reachable, map.getInt(12),
+                map.getInt(16));
+    }
+
+    /**
+     * Replace the file with a bigger table and map it
+     *
+     * @param values the values, every pile size from 0
+     * @param reachable the solver's reachable set
+     * @param mex the mex of the reachable set
+     * @param maxValue the largest value
+     * @return the new table, mapped from the file
+     * @throws IOException if the file can't be written
+     */
+    public Contents save(int[] values, long[] reachable, int mex,
+                         int maxValue) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 * values.length +
+                8 * reachable.length);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(values.length)
+                .putInt(mex).putInt(maxValue).putInt(reachable.length)
+                .putLong(0);
+        buffer.asIntBuffer().put(values);
+        buffer.position(HEADER + 4 * values.length);
+        LongBuffer longs = buffer.asLongBuffer();
+        longs.put(reachable);
+        buffer.position(0);
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(),
+                ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.WRITE)){
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return load();
+    }
+
+    /**
+     * What a table file holds
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    public static class Contents {
+
+        /** Grundy value of each pile size, read from the mapping */
+        final IntBuffer values;
+
+        /** Number of pile sizes */
+        final int count;
+
+        /** The solver's reachable set */
+        final long[] reachable;
+
+        /** The mex of the reachable set */
+        final int mex;
+
+        /** The largest value */
+        final int maxValue;
+
+        /**
+         * Gather what a table file holds
+         *
+         * @param values the values
+         * @param count the number of pile sizes
+         * @param reachable the reachable set
+         * @param mex the mex of the reachable set
+         * @param maxValue the largest value
+         */
+        Contents(IntBuffer values, int count, long[] reachable, int mex,
+                 int maxValue){
+            this.values = values;
+            this.count = count;
+            this.reachable = reachable;
+            this.mex = mex;
+            this.maxValue = maxValue;
+        }
+    }
+}
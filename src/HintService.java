@@ -0,0 +1,126 @@
+/*
+ * @filename HintService.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Works out hints for players away from their games
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Works out hints on a pool of its own, so working out a hint never
+ * holds a game's lock or its actor's worker. A game only hands over a
+ * copy of its board, the board's key and what to do with the answer.
+ * The answer goes back through the game, so it is sent to the player
+ * under the game's lock, or as one of its actor's messages, and never
+ * in the middle of the game's own messages.
+ *
+ * Hints are winning moves from a GrundySolver, which remembers them in
+ * its TranspositionTable keyed on the position, so when every game of
+ * a tournament asks about the same board only the first request does
+ * any searching. The table is shared with the bots, and is safe to use
+ * from any number of threads.
+ *
+ * Requests wait in a bounded queue. When a burst of them fills it the
+ * newest are counted and answered straight away as too busy, rather
+ * than the games that asked doing the work themselves, so every player
+ * who asks hears back.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class HintService {
+
+    /** Most requests waiting to be answered before new ones are dropped */
+    private static final int QUEUE_SIZE = 4096;
+
+    /** Works out the moves */
+    private final GrundySolver solver;
+
+    /** Where the hints are worked out */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create a hint service with a thread per core, started as requests
+     * arrive
+     *
+     * @param solver works out winning moves
+     */
+    public HintService(GrundySolver solver){
+        this.solver = solver;
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+                task -> {
+                    Thread thread = new Thread(task, "hint");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, pool) -> {
+                    NimMetrics.hintDropped();
+                    ((Request) task).busy.run();
+                });
+    }
+
+    /**
+     * Work out the winning move of a board
+     *
+     * @param piles a copy of the board, not empty
+     * @param key the key of the board, see Piles.key
+     * @param reply given the move as {pile, start, amount}, or null if
+     *              every move loses, on whichever thread has it
+     * @param busy run instead if the service is too busy to work it out
+     */
+    public void answer(int[] piles, long key, Consumer<int[]> reply,
+                       Runnable busy){
+        executor.execute(new Request(piles, key, reply, busy));
+    }
+
+    /**
+     * A board waiting for its winning move
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Request implements Runnable {
+
+        /** The board */
+        private final int[] piles;
+
+        /** The key of the board */
+        private final long key;
+
+        /** Given the move */
+        private final Consumer<int[]> reply;
+
+        /** Run if the move won't be worked out */
+        private final Runnable busy;
+
+        /**
+         * Make a request
+         *
+         * @param piles the board
+         * @param key the key of the board
+         * @param reply given the move
+         * @param busy run if the move won't be worked out
+         */
+        Request(int[] piles, long key, Consumer<int[]> reply,
+                Runnable busy){
+            this.piles = piles;
+            this.key = key;
+            this.reply = reply;
+            this.busy = busy;
+        }
+
+        /**
+         * Work out the move and hand it over
+         */
+        @Override
+        public void run(){
+            reply.accept(solver.winningMove(piles, key));
+        }
+    }
+}
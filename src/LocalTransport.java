@@ -0,0 +1,557 @@
+/*
+ * @filename LocalTransport.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Connects players in the same process as the server, without sockets
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connects players running in the server's own process, like
+ * simulations, load tests and bots, to its matchmaker through memory
+ * instead of a socket. Each connection is a pair of SpscRings, one for
+ * each direction. Messages are written into the rings' slots and read
+ * out of them in place, with no encoding, no streams and nothing
+ * allocated, and a board is copied once, into the slot, then handed to
+ * the listener on the other side as it is.
+ *
+ * A connection keeps the guarantees of the socket transports. A
+ * client's requests reach its seat in the order it made them, and the
+ * messages a game sends between flushes are published to the client
+ * together, in order, when the game flushes. Each side reads its ring
+ * on a thread of its own, so neither ever calls into the other on the
+ * caller's thread.
+ *
+ * A client that makes requests faster than its seat reads them waits
+ * for room. A client that stops reading has its connection closed once
+ * its ring is full, the same as the disconnect policy of a socket, so
+ * it can't hold up the game it is in.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class LocalTransport implements Transport {
+
+    /** Messages a direction of a connection holds before it is full */
+    static final int CAPACITY = 1024;
+
+    /** Nanoseconds a client waits between looks for room in a full ring */
+    private static final long BACKOFF = 50_000;
+
+    /** Pairs joined players into games */
+    private final Matchmaker matchmaker;
+
+    /** The kind of thread each side of a connection reads on */
+    private final ThreadMode threadMode;
+
+    /** If the transport has been started */
+    private volatile boolean started;
+
+    /**
+     * Create a new in memory transport
+     *
+     * @param matchmaker pairs joined players into games
+     * @param threadMode the kind of thread each side of a connection
+     *                   reads on
+     */
+    public LocalTransport(Matchmaker matchmaker, ThreadMode threadMode){
+        this.matchmaker = matchmaker;
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * Start taking connections, there is nothing to bind
+     */
+    @Override
+    public void start(){
+        started = true;
+    }
+
+    /**
+     * Open a connection to the matchmaker. Like a ModelProxy, give it a
+     * listener and then join or resume through it.
+     *
+     * @return the client's end of the connection
+     */
+    public Client connect(){
+        if(!started)
+            throw new IllegalStateException("LocalTransport not started");
+        return new Client(matchmaker.seat());
+    }
+
+    /**
+     * The client's end of a connection, the view listener a client plays
+     * through, the same as a ModelProxy
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    public class Client implements ViewListener {
+
+        /** Requests from the client to its seat */
+        private final SpscRing requests = new SpscRing(CAPACITY);
+
+        /** Messages from the game to the client */
+        private final SpscRing messages = new SpscRing(CAPACITY);
+
+        /** The server's end of the connection */
+        private final Server server;
+
+        /** The client's listener */
+        private ModelListener listener;
+
+        /** If the client has quit, so the end of messages is expected */
+        private volatile boolean quitting;
+
+        /**
+         * Open a connection and start the server's end reading it
+         *
+         * @param seat the seat the connection plays from
+         */
+        Client(ViewListener seat){
+            server = new Server(seat);
+            NimMetrics.connected();
+            threadMode.start("LocalTransport-server", server::read);
+        }
+
+        /**
+         * Set the model listener for this connection, and start
+         * delivering messages to it
+         *
+         * @param listener the listener
+         */
+        public void setListener(ModelListener listener){
+            this.listener = listener;
+            threadMode.start("LocalTransport-client", this::read);
+        }
+
+        /**
+         * A request from the client to take a certain
+         * amount of sticks from a pile
+         *
+         * @param pile the pile number (zero indexed)
+         * @param start the start amount to take
+         * @param amount the ending amount to take
+         */
+        @Override
+        public synchronized void moveRequest(int pile, int start,
+                                             int amount) {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.MOVE_REQUEST;
+            slot.pile = pile;
+            slot.start = start;
+            slot.amount = amount;
+            send();
+        }
+
+        /**
+         * Restart the game, to a fresh one
+         */
+        @Override
+        public synchronized void newGame() {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.NEW_GAME;
+            send();
+        }
+
+        /**
+         * Report that a player has joined a game
+         *
+         * @param view the view that we are talking to
+         * @param name the name of the player
+         */
+        @Override
+        public synchronized void join(ModelListener view, String name) {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.JOIN;
+            slot.name = name;
+            send();
+        }
+
+        /**
+         * Cause server to end the game
+         */
+        @Override
+        public synchronized void quit() {
+            quitting = true;
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.QUIT;
+            send();
+        }
+
+        /**
+         * Ask for the whole board again
+         *
+         * @param view the view that wants the board
+         */
+        @Override
+        public synchronized void resync(ModelListener view) {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.RESYNC;
+            send();
+        }
+
+        /**
+         * Take back the seat a session token was given for
+         *
+         * @param view the view of this connection
+         * @param token the token from the session
+         */
+        @Override
+        public synchronized void resume(ModelListener view, long token) {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.RESUME;
+            slot.token = token;
+            send();
+        }
+
+        /**
+         * Ask for the winning move of the board
+         *
+         * @param view the view that wants the hint
+         */
+        @Override
+        public synchronized void hint(ModelListener view) {
+            SpscRing.Slot slot = claim();
+            if(slot == null)
+                return;
+            slot.op = ViewListener.HINT;
+            send();
+        }
+
+        /**
+         * Close the connection. The seat is told the player quit unless
+         * it already knows.
+         */
+        public void close(){
+            requests.close();
+            messages.close();
+        }
+
+        /**
+         * Wait for room for a request
+         *
+         * @return the slot to write the request into, or null if the
+         * connection is closed
+         */
+        private SpscRing.Slot claim(){
+            SpscRing.Slot slot;
+            while((slot = requests.claim()) == null){
+                if(requests.isClosed())
+                    return null;
+                LockSupport.parkNanos(BACKOFF);
+            }
+            return slot;
+        }
+
+        /**
+         * Hand the request just written to the seat
+         */
+        private void send(){
+            requests.commit();
+            requests.publish();
+        }
+
+        /**
+         * Deliver messages to the listener until the connection is
+         * closed, then report the game is over unless the client quit
+         * or was told already
+         */
+        private void read(){
+            boolean over = false;
+            while(!over && messages.await()){
+                SpscRing.Slot slot = messages.peek();
+                int op = slot.op;
+                switch(op){
+                    case ModelListener.QUIT -> {
+                        over = true;
+                        listener.quit();
+                    }
+                    case ModelListener.MOVE_MADE -> listener.moveMade(slot);
+                    case ModelListener.MOVE_DELTA -> listener.moveApplied(
+                            slot.pile, slot.start, slot.amount,
+                            slot.checksum, slot);
+                    case ModelListener.WAITING_OTHER_PLAYER ->
+                            listener.waitingForOtherPlayer();
+                    case ModelListener.MY_TURN -> listener.myTurn();
+                    case ModelListener.OTHER_TURN ->
+                            listener.otherTurn(slot.name);
+                    case ModelListener.YOU_WON -> listener.youWon();
+                    case ModelListener.OTHER_WIN ->
+                            listener.otherWin(slot.name);
+                    case ModelListener.NEW_GAME -> listener.newGame(slot);
+                    case ModelListener.SESSION ->
+                            listener.session(slot.token);
+                    case ModelListener.HINT -> {
+                        if(slot.present)
+                            listener.hint(new int[]{slot.pile, slot.start,
+                                    slot.amount});
+                        else if(slot.checksum == WireCodec.HINT_NONE)
+                            listener.noHint();
+                        else
+                            listener.hint(null);
+                    }
+                    default -> System.err.printf(
+                            "LocalTransport: unknown message %c\n", op);
+                }
+                messages.release();
+            }
+            close();
+            if(!over && !quitting)
+                listener.quit();
+        }
+
+        /**
+         * The server's end of a connection, the model listener the game
+         * talks to the client through, the same as a ViewProxy
+         *
+         * @author Chris Tremblay (cst1465)
+         * @version 1.0
+         */
+        private class Server implements ModelListener {
+
+            /** The seat the connection plays from */
+            private final ViewListener seat;
+
+            /** If the client has quit, so the end of requests is expected */
+            private boolean quit;
+
+            /**
+             * Create the server's end of a connection
+             *
+             * @param seat the seat the connection plays from
+             */
+            Server(ViewListener seat){
+                this.seat = seat;
+            }
+
+            /**
+             * Report a player quit
+             */
+            @Override
+            public synchronized void quit() {
+                stage(ModelListener.QUIT);
+            }
+
+            /**
+             * Report a player made a move
+             *
+             * @param piles the new piles formed from the move
+             */
+            @Override
+            public synchronized void moveMade(PileView piles) {
+                SpscRing.Slot slot = stage(ModelListener.MOVE_MADE);
+                if(slot != null)
+                    slot.board(piles);
+            }
+
+            /**
+             * Report a player made a move, along with the move and the
+             * board after it
+             *
+             * @param pile the pile number (zero indexed)
+             * @param start the start amount taken
+             * @param amount the amount taken from the start index
+             * @param checksum the checksum of the board after the move
+             * @param piles the new piles formed from the move
+             */
+            @Override
+            public synchronized void moveApplied(int pile, int start,
+                                                 int amount, int checksum,
+                                                 PileView piles) {
+                SpscRing.Slot slot = stage(ModelListener.MOVE_DELTA);
+                if(slot == null)
+                    return;
+                slot.pile = pile;
+                slot.start = start;
+                slot.amount = amount;
+                slot.checksum = checksum;
+                slot.board(piles);
+            }
+
+            /**
+             * Report that a player is waiting for other player
+             */
+            @Override
+            public synchronized void waitingForOtherPlayer() {
+                stage(ModelListener.WAITING_OTHER_PLAYER);
+            }
+
+            /**
+             * Report that it's my turn to play
+             */
+            @Override
+            public synchronized void myTurn() {
+                stage(ModelListener.MY_TURN);
+            }
+
+            /**
+             * Report that it's another players turn to play
+             *
+             * @param player the player who's turn it is
+             */
+            @Override
+            public synchronized void otherTurn(String player) {
+                SpscRing.Slot slot = stage(ModelListener.OTHER_TURN);
+                if(slot != null)
+                    slot.name = player;
+            }
+
+            /**
+             * Report that this player has won
+             */
+            @Override
+            public synchronized void youWon() {
+                stage(ModelListener.YOU_WON);
+            }
+
+            /**
+             * Report that another player has won
+             *
+             * @param player the winning player
+             */
+            @Override
+            public synchronized void otherWin(String player) {
+                SpscRing.Slot slot = stage(ModelListener.OTHER_WIN);
+                if(slot != null)
+                    slot.name = player;
+            }
+
+            /**
+             * Report that a new game has been started
+             *
+             * @param piles the list of piles and amounts
+             */
+            @Override
+            public synchronized void newGame(PileView piles) {
+                SpscRing.Slot slot = stage(ModelListener.NEW_GAME);
+                if(slot != null)
+                    slot.board(piles);
+            }
+
+            /**
+             * Give the client the token it can take its seat back with
+             *
+             * @param token the token
+             */
+            @Override
+            public synchronized void session(long token) {
+                SpscRing.Slot slot = stage(ModelListener.SESSION);
+                if(slot != null)
+                    slot.token = token;
+            }
+
+            /**
+             * Answer a request for a hint
+             *
+             * @param move the winning move, or null if every move loses
+             */
+            @Override
+            public synchronized void hint(int[] move) {
+                SpscRing.Slot slot = stage(ModelListener.HINT);
+                if(slot == null)
+                    return;
+                slot.present = move != null;
+                slot.checksum = WireCodec.HINT_LOSING;
+                if(move != null) {
+                    slot.pile = move[0];
+                    slot.start = move[1];
+                    slot.amount = move[2];
+                }
+            }
+
+            /**
+             * Tell the client its hint wasn't worked out, the checksum
+             * of a hint carries the status the wire would
+             */
+            @Override
+            public synchronized void noHint() {
+                SpscRing.Slot slot = stage(ModelListener.HINT);
+                if(slot == null)
+                    return;
+                slot.present = false;
+                slot.checksum = WireCodec.HINT_NONE;
+            }
+
+            /**
+             * Publish every message staged since the last flush to the
+             * client at once
+             */
+            @Override
+            public synchronized void flush() {
+                messages.publish();
+            }
+
+            /**
+             * Take the next slot for a message to the client, closing
+             * the connection if the client has let the ring fill up
+             *
+             * @param op the opcode of the message
+             * @return the slot, already committed, or null if the
+             * connection is closed
+             */
+            private SpscRing.Slot stage(int op){
+                SpscRing.Slot slot = messages.claim();
+                if(slot == null) {
+                    if(!messages.isClosed()) {
+                        NimMetrics.slowConsumer();
+                        messages.publish();
+                        close();
+                    }
+                    return null;
+                }
+                NimMetrics.sent(op);
+                slot.op = op;
+                messages.commit();
+                return slot;
+            }
+
+            /**
+             * Hand requests to the seat until the connection is closed,
+             * then report the player gone unless it quit
+             */
+            private void read(){
+                while(!quit && requests.await()){
+                    SpscRing.Slot slot = requests.peek();
+                    int op = slot.op;
+                    NimMetrics.received(op);
+                    switch(op){
+                        case ViewListener.MOVE_REQUEST -> seat.moveRequest(
+                                slot.pile, slot.start, slot.amount);
+                        case ViewListener.NEW_GAME -> seat.newGame();
+                        case ViewListener.JOIN -> seat.join(this, slot.name);
+                        case ViewListener.QUIT -> {
+                            quit = true;
+                            seat.quit();
+                        }
+                        case ViewListener.RESYNC -> seat.resync(this);
+                        case ViewListener.RESUME ->
+                                seat.resume(this, slot.token);
+                        case ViewListener.HINT -> seat.hint(this);
+                        default -> System.err.printf(
+                                "LocalTransport: unknown request %c\n", op);
+                    }
+                    requests.release();
+                }
+                NimMetrics.disconnected();
+                if(!quit)
+                    seat.quit();
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * @filename Matchmaker.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Pairs joined players into games
+ */
+
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pairs players into games once they have actually joined. Every
+ * connection gets a Seat as its view listener, and the seat only asks
+ * for an opponent when its JOIN arrives, so a client that connects and
+ * never joins can't hold up anybody else.
+ *
+ * Every game is played on the same board, so at most one joined player
+ * is ever left without an opponent. The waiting line is therefore a
+ * single slot updated with compare and set, which any number of
+ * acceptor or event loop threads can pair through without locking.
+ *
+ * If bots are turned on, a player left waiting too long is given a
+ * BotPlayer as an opponent instead.
+ *
+ * Every joined player is given a random session token. If their
+ * connection drops in the middle of a game their seat is held for a
+ * grace period, and a new connection that sends RESUME with the token
+ * takes it back. Once the grace period is up the game ends as if they
+ * had quit.
+ *
+ * If hints are turned on, players can ask for them in any game, they
+ * are worked out by a HintService shared by every game.
+ *
+ * Games either run on the threads of their players, behind the model's
+ * lock, or as GameActors on a shared pool, where players only post
+ * requests to the game's mailbox.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class Matchmaker {
+
+    /** The starting piles of every game */
+    private final int[] piles;
+
+    /** Where games log their events, or null */
+    private final GameLog log;
+
+    /** Where games journal their changes, or null */
+    private final MoveJournal journal;
+
+    /** Games being played, by id */
+    private final ConcurrentHashMap<Long, NimModel> games =
+            new ConcurrentHashMap<>();
+
+    /** Seats that can be resumed, by session token */
+    private final ConcurrentHashMap<Long, Seat> sessions =
+            new ConcurrentHashMap<>();
+
+    /** Makes session tokens that can't be guessed */
+    private final SecureRandom random = new SecureRandom();
+
+    /** The player waiting for an opponent, if any */
+    private final AtomicReference<Seat> waiting = new AtomicReference<>();
+
+    /** How well bots play, or null for no bots */
+    private final BotPlayer.Strength botStrength;
+
+    /** Milliseconds a player waits before being given a bot */
+    private final long botDelay;
+
+    /** Works out moves for perfect bots, or null if there are none */
+    private final GrundySolver solver;
+
+    /** Works out hints, or null for no hints */
+    private final HintService hints;
+
+    /** The pool games run on as actors, or null to run them in place */
+    private final GameActor.Pool actors;
+
+    /**
+     * Gives waiting players a bot once their time is up, and ends
+     * games whose dropped players don't come back
+     */
+    private final ScheduledExecutorService timer;
+
+    /** The name bots play under */
+    private static final String BOT_NAME = "bot";
+
+    /** Milliseconds a dropped player's seat is held for them */
+    static final long GRACE = 30_000;
+
+    /**
+     * Create a new matchmaker
+     *
+     * @param piles the starting piles of every game
+     * @param log where games log their events, or null for no log
+     */
+    public Matchmaker(int[] piles, GameLog log){
+        this(piles, log, null, null, 0, null, null, null);
+    }
+
+    /**
+     * Create a new matchmaker that seats a bot with anyone left waiting
+     *
+     * @param piles the starting piles of every game
+     * @param log where games log their events, or null for no log
+     * @param journal where games journal their changes, or null for none
+     * @param botStrength how well bots play, or null for no bots
+     * @param botDelay milliseconds a player waits before getting a bot
+     * @param solver works out moves for perfect bots, or null if the
+     *               bots aren't perfect
+     * @param hints works out hints, or null for no hints
+     * @param actors the pool to run games on as actors, or null to run
+     *               them on their players' threads
+     */
+    public Matchmaker(int[] piles, GameLog log, MoveJournal journal,
+                      BotPlayer.Strength botStrength, long botDelay,
+                      GrundySolver solver, HintService hints,
+                      GameActor.Pool actors){
+        this.piles = piles;
+        this.log = log;
+        this.journal = journal;
+        this.botStrength = botStrength;
+        this.botDelay = botDelay;
+        this.solver = solver;
+        this.hints = hints;
+        this.actors = actors;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "matchmaker-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Make a seat for a new connection
+     *
+     * @return the view listener the connection should report to
+     */
+    public ViewListener seat(){
+        return new Seat();
+    }
+
+    /**
+     * Get the games being played, for snapshots
+     *
+     * @return a live view of the games
+     */
+    public Collection<NimModel> games(){
+        return games.values();
+    }
+
+    /**
+     * Take over a game recovered after a restart. Its players are away
+     * until they resume with their tokens, and a game with a player who
+     * has no token can never be finished, so it is ended
+     *
+     * @param game the game
+     */
+    public void adopt(NimModel game){
+        NimModel.Snapshot snapshot = game.snapshot();
+        if(snapshot == null)
+            return;
+        if(snapshot.token1 == 0 || snapshot.token2 == 0){
+            game.quit();
+            return;
+        }
+        game.setHints(hints);
+        games.put(game.getId(), game);
+        ViewListener inbox = inbox(game);
+        Seat seat1 = new Seat(inbox, game.getId(), snapshot.player1,
+                snapshot.token1);
+        Seat seat2 = new Seat(inbox, game.getId(), snapshot.player2,
+                snapshot.token2);
+        seat1.opponentToken = seat2.token;
+        seat2.opponentToken = seat1.token;
+        sessions.put(seat1.token, seat1);
+        sessions.put(seat2.token, seat2);
+        seat1.away();
+        seat2.away();
+    }
+
+    /**
+     * Get where the requests for a game go
+     *
+     * @param model the game
+     * @return the game itself, or an actor for it
+     */
+    private ViewListener inbox(NimModel model){
+        return actors == null ? model : new GameActor(model, actors);
+    }
+
+    /**
+     * Get what to start a game on
+     *
+     * @param inbox where the game's requests go
+     * @return the game's actor, or the caller's thread
+     */
+    private static Executor starter(ViewListener inbox){
+        return inbox instanceof GameActor actor ? actor : Runnable::run;
+    }
+
+    /**
+     * Make a session token
+     *
+     * @return a random token, never 0
+     */
+    private long newToken(){
+        long token;
+        do {
+            token = random.nextLong();
+        } while(token == 0);
+        return token;
+    }
+
+    /**
+     * Find an opponent for a joined player, or leave them waiting
+     *
+     * @param seat the player's seat
+     */
+    private void enqueue(Seat seat){
+        while(true){
+            Seat other = waiting.get();
+            if(other == null){
+                if(waiting.compareAndSet(null, seat))
+                    return;
+            } else if(waiting.compareAndSet(other, null)
+                    && other.claim()){
+                if(seat.claim()) {
+                    pair(other, seat);
+                } else {
+                    // this player left while we were pairing
+                    other.state.set(Seat.OPEN);
+                    enqueue(other);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start a game between two players
+     *
+     * @param first the player who waited
+     * @param second the player who just joined
+     */
+    private void pair(Seat first, Seat second){
+        NimModel model = new NimModel(piles, log, journal);
+        model.setHints(hints);
+        games.put(model.getId(), model);
+        ViewListener inbox = inbox(model);
+        first.seat(inbox, model.getId());
+        second.seat(inbox, model.getId());
+        first.opponentToken = second.token;
+        second.opponentToken = first.token;
+        starter(inbox).execute(() -> model.start(first.view, first.name,
+                first.token, second.view, second.name, second.token));
+        first.started();
+        second.started();
+    }
+
+    /**
+     * Give a player a bot if they are still waiting
+     *
+     * @param seat the player's seat
+     */
+    private void seatBot(Seat seat){
+        if(!waiting.compareAndSet(seat, null) || !seat.claim())
+            return;
+        NimModel model = new NimModel(piles, log, journal);
+        model.setHints(hints);
+        games.put(model.getId(), model);
+        ViewListener inbox = inbox(model);
+        seat.seat(inbox, model.getId());
+        BotPlayer bot = new BotPlayer(inbox, botStrength, solver);
+        starter(inbox).execute(() -> model.start(seat.view, seat.name,
+                seat.token, bot, BOT_NAME, 0));
+        seat.started();
+    }
+
+    /**
+     * The view listener of a single connection. Forwards to its game
+     * once it has one.
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Seat implements ViewListener {
+
+        /** Not joined yet, or waiting for an opponent */
+        private static final int OPEN = 0;
+
+        /** Given an opponent */
+        private static final int MATCHED = 1;
+
+        /** Left before being given an opponent */
+        private static final int CANCELLED = 2;
+
+        /** The state of this seat */
+        private final AtomicInteger state = new AtomicInteger(OPEN);
+
+        /** The view of this player */
+        private ModelListener view;
+
+        /** The name of this player */
+        private String name;
+
+        /** Where this player's game takes requests, once paired */
+        private volatile ViewListener game;
+
+        /** The id of this player's game, once paired */
+        private long id;
+
+        /** The token this player can resume their seat with, or 0 */
+        private long token;
+
+        /** The token of this player's opponent, or 0 */
+        private long opponentToken;
+
+        /**
+         * If this player's game has been started, so a quit can go to it.
+         * Before then a quit only marks the seat left, and whoever starts
+         * the game passes it on
+         */
+        private volatile boolean live;
+
+        /** If this player has quit */
+        private volatile boolean left;
+
+        /** If this seat has ended its game */
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        /**
+         * Make a seat for a new connection
+         */
+        Seat(){}
+
+        /**
+         * Make the seat of a player in a recovered game
+         *
+         * @param game where the game takes requests
+         * @param id the id of the game
+         * @param name the name of the player
+         * @param token the token the player can resume with
+         */
+        Seat(ViewListener game, long id, String name, long token){
+            this.name = name;
+            this.token = token;
+            seat(game, id);
+            state.set(MATCHED);
+            live = true;
+        }
+
+        /**
+         * Put this player in a game
+         *
+         * @param game where the game takes requests
+         * @param id the id of the game
+         */
+        void seat(ViewListener game, long id){
+            this.id = id;
+            this.game = game;
+        }
+
+        /**
+         * Note that this player's game has been started, and pass on a
+         * quit that came while it was being set up
+         */
+        void started(){
+            live = true;
+            if(left)
+                end();
+        }
+
+        /**
+         * End this player's game, once, and forget the sessions of both
+         * of its players
+         */
+        private void end(){
+            if(!ended.compareAndSet(false, true))
+                return;
+            sessions.remove(token);
+            if(opponentToken != 0)
+                sessions.remove(opponentToken);
+            game.quit();
+            games.remove(id);
+        }
+
+        /**
+         * Take this seat for a game
+         *
+         * @return true if the seat was still open
+         */
+        boolean claim(){
+            return state.compareAndSet(OPEN, MATCHED);
+        }
+
+        /**
+         * Report that a player has joined a game
+         *
+         * @param view the view that we are talking to
+         * @param name the name of the player
+         */
+        @Override
+        public void join(ModelListener view, String name) {
+            if(this.view != null)
+                return;
+            this.view = view;
+            this.name = name;
+            this.token = newToken();
+            sessions.put(token, this);
+            view.session(token);
+            view.waitingForOtherPlayer();
+            view.flush();
+            enqueue(this);
+            if(botStrength != null)
+                timer.schedule(() -> seatBot(this), botDelay,
+                        TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Take the seat of a player whose connection dropped
+         *
+         * @param view the view of the new connection
+         * @param token the token the player was given
+         */
+        @Override
+        public void resume(ModelListener view, long token) {
+            if(this.view != null)
+                return;
+            Seat old = sessions.get(token);
+            ViewListener g = old == null ? null : old.game;
+            if(g == null || !sessions.replace(token, old, this)){
+                view.quit();
+                view.flush();
+                return;
+            }
+            this.view = view;
+            this.name = old.name;
+            this.token = token;
+            this.opponentToken = old.opponentToken;
+            seat(g, old.id);
+            state.set(MATCHED);
+            live = true;
+            g.resume(view, token);
+        }
+
+        /**
+         * Hold this seat for a while after the connection dropped, or
+         * give it up if there is no game yet
+         *
+         * @param view the view whose connection dropped
+         */
+        @Override
+        public void dropped(ModelListener view) {
+            ViewListener g = game;
+            if(g == null){
+                quit();
+                return;
+            }
+            g.dropped(view);
+            away();
+        }
+
+        /**
+         * End the game if the player hasn't resumed this seat once the
+         * grace period is up
+         */
+        void away(){
+            timer.schedule(() -> {
+                if(sessions.remove(token, this))
+                    end();
+            }, GRACE, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * A request from the client to take a certain
+         * amount of sticks from a pile
+         *
+         * @param pile  the pile number (zero indexed)
+         * @param start the start amount to take
+         * @param amount the amount to take from the start index
+         */
+        @Override
+        public void moveRequest(int pile, int start, int amount) {
+            ViewListener g = game;
+            if(g != null)
+                g.moveRequest(pile, start, amount);
+        }
+
+        /**
+         * Restart the game, to a fresh one
+         */
+        @Override
+        public void newGame() {
+            ViewListener g = game;
+            if(g != null)
+                g.newGame();
+        }
+
+        /**
+         * Ask for the whole board
+         *
+         * @param view the view that wants the board
+         */
+        @Override
+        public void resync(ModelListener view) {
+            ViewListener g = game;
+            if(g != null)
+                g.resync(view);
+        }
+
+        /**
+         * Ask for the winning move of the board
+         *
+         * @param view the view that wants the hint
+         */
+        @Override
+        public void hint(ModelListener view) {
+            ViewListener g = game;
+            if(g != null)
+                g.hint(view);
+        }
+
+        /**
+         * Cause server to end the game, or give up the seat if
+         * there is no game yet
+         */
+        @Override
+        public void quit() {
+            sessions.remove(token, this);
+            left = true;
+            if(state.compareAndSet(OPEN, CANCELLED)){
+                waiting.compareAndSet(this, null);
+                return;
+            }
+            if(live)
+                end();
+        }
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * @filename MctsEngine.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Picks moves by Monte Carlo tree search
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks moves without a Grundy table, for boards too big to build one
+ * for or rules it doesn't cover. Every iteration walks down a tree of
+ * positions by UCT, adds a position, plays random moves from there to
+ * the end of the game, and counts the result on every position of the
+ * walk. The move played is the one tried most once the budget is up.
+ *
+ * A move is searched by several threads at once, in one of two ways.
+ * In tree mode they share one tree, and a thread walking down counts
+ * its visit straight away, before it knows the result, so the others
+ * are steered to different branches. In root mode each thread grows a
+ * tree of its own from the same moves and the visits are added up at
+ * the end, which costs more memory but no thread ever touches another
+ * thread's counters.
+ *
+ * The budget is wall clock time and is kept strictly: threads check
+ * the time on every iteration and every CHECK_EVERY moves of a random
+ * game, and the move is picked at the deadline whether or not every
+ * thread has stopped. A move never takes more than the budget times
+ * the number of threads of CPU.
+ *
+ * A random game is played on a PileArray and a path array each thread
+ * keeps, so playing one allocates nothing once they have grown to the
+ * biggest board seen.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class MctsEngine {
+
+    /**
+     * How the threads searching a move share the work
+     */
+    public enum Mode {
+
+        /** All threads grow one tree */
+        TREE,
+
+        /** Every thread grows its own tree, their visits are added up */
+        ROOT;
+
+        /**
+         * Look up a mode from a command line argument
+         *
+         * @param arg the argument, like "root"
+         * @return the mode, or null if the argument isn't one
+         */
+        public static Mode parse(String arg){
+            for(Mode mode : values())
+                if(mode.name().equalsIgnoreCase(arg))
+                    return mode;
+            return null;
+        }
+    }
+
+    /** Milliseconds a move is searched for unless told otherwise */
+    public static final long DEFAULT_BUDGET = 100;
+
+    /** Most moves a position is given, big boards get a random sample */
+    static final int MAX_MOVES = 1024;
+
+    /** Moves of a random game between checks of the deadline */
+    private static final int CHECK_EVERY = 256;
+
+    /** How much UCT favours moves tried less */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /** How the threads share the work */
+    private final Mode mode;
+
+    /** Threads searching each move, the caller and the helpers */
+    private final int threads;
+
+    /** Nanoseconds each move is searched for */
+    private final long budget;
+
+    /** Threads that help the caller search, or null for none */
+    private final ExecutorService helpers;
+
+    /** The scratch state of each thread */
+    private final ThreadLocal<Worker> workers =
+            ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Create an engine
+     *
+     * @param mode how the threads share the work
+     * @param threads the number of threads searching each move,
+     *                including the caller
+     * @param budget milliseconds to search each move for
+     */
+    public MctsEngine(Mode mode, int threads, long budget){
+        this.mode = mode;
+        this.threads = Math.max(threads, 1);
+        this.budget = TimeUnit.MILLISECONDS.toNanos(budget);
+        this.helpers = this.threads == 1 ? null
+                : Executors.newFixedThreadPool(this.threads - 1, task -> {
+                    Thread thread = new Thread(task, "mcts");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Get the engine bots share, searching in root mode on every core,
+     * made the first time it is asked for
+     *
+     * @return the engine
+     */
+    public static MctsEngine shared(){
+        return Shared.ENGINE;
+    }
+
+    /**
+     * Pick a move, searching on the calling thread and the helpers
+     * until the budget is up
+     *
+     * @param piles the board, not empty
+     * @return {pile, start, amount} as NimModel.moveRequest takes them
+     */
+    public int[] choose(int[] piles){
+        long deadline = System.nanoTime() + budget;
+        int[] moves = moves(new PileArray(piles), ThreadLocalRandom.current());
+        if(moves.length > 3){
+            Node[] roots = new Node[mode == Mode.TREE ? 1 : threads];
+            for(int i = 0; i < roots.length; i++)
+                roots[i] = new Node(moves);
+            for(int i = 1; i < threads; i++){
+                Node root = roots[i % roots.length];
+                helpers.execute(() -> workers.get().search(root, piles,
+                        deadline));
+            }
+            workers.get().search(roots[0], piles, deadline);
+            moves = best(roots, moves);
+        }
+        int pile = 0;
+        while(piles[pile] != moves[0])
+            pile++;
+        return new int[]{pile, moves[1], moves[0] - moves[1] - moves[2]};
+    }
+
+    /**
+     * Find the move tried most, adding up the visits of every tree
+     *
+     * @param roots the trees
+     * @param moves the moves of the root, in threes
+     * @return the move, as the three numbers of a move in the list
+     */
+    private static int[] best(Node[] roots, int[] moves){
+        int best = 0;
+        long most = -1;
+        for(int m = 0; m < moves.length / 3; m++){
+            long visits = 0;
+            for(Node root : roots){
+                Node child = root.child(m);
+                if(child != null)
+                    visits += child.stats() >>> 32;
+            }
+            if(visits > most){
+                best = m;
+                most = visits;
+            }
+        }
+        return Arrays.copyOfRange(moves, 3 * best, 3 * best + 3);
+    }
+
+    /**
+     * List the moves of a position, in a random order. A move is given
+     * as the size of the pile it is made on and the two piles it
+     * leaves, a and b with a no bigger than b, three numbers a move, so
+     * moves that lead to the same position are only listed once. When
+     * there are more than MAX_MOVES a random sample of them is listed.
+     *
+     * @param board the position
+     * @param random where to get random numbers
+     * @return the moves, in threes
+     */
+    private static int[] moves(PileArray board, ThreadLocalRandom random){
+        int[] sizes = board.toArray();
+        Arrays.sort(sizes);
+        long total = 0;
+        for(int i = 0; i < sizes.length; i++)
+            if(i == 0 || sizes[i] != sizes[i - 1])
+                total += count(sizes[i]);
+        int[] moves;
+        if(total > MAX_MOVES){
+            moves = new int[3 * MAX_MOVES];
+            for(int m = 0; m < moves.length; m += 3){
+                int p = sizes[random.nextInt(sizes.length)];
+                int a = random.nextInt((p - 1) / 2 + 1);
+                moves[m] = p;
+                moves[m + 1] = a;
+                moves[m + 2] = a + random.nextInt(p - 2 * a);
+            }
+            return moves;
+        }
+        moves = new int[3 * (int) total];
+        int m = 0;
+        for(int i = 0; i < sizes.length; i++){
+            int p = sizes[i];
+            if(i > 0 && p == sizes[i - 1])
+                continue;
+            for(int a = 0; 2 * a <= p - 1; a++){
+                for(int b = a; a + b <= p - 1; b++){
+                    moves[m++] = p;
+                    moves[m++] = a;
+                    moves[m++] = b;
+                }
+            }
+        }
+        for(int i = moves.length / 3 - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            for(int k = 0; k < 3; k++){
+                int t = moves[3 * i + k];
+                moves[3 * i + k] = moves[3 * j + k];
+                moves[3 * j + k] = t;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Count the different moves on a pile
+     *
+     * @param p the pile size
+     * @return the number of pairs a and b with a no bigger than b and
+     * a + b < p
+     */
+    private static long count(int p){
+        long h = (p - 1) / 2;
+        return (h + 1) * (p - h);
+    }
+
+    /**
+     * Make a move given as three numbers of a move list
+     *
+     * @param board the position
+     * @param moves the move list
+     * @param m the first of the three numbers
+     */
+    private static void play(PileArray board, int[] moves, int m){
+        int p = moves[m];
+        int pile = 0;
+        while(board.get(pile) != p)
+            pile++;
+        board.apply(pile, moves[m + 1], p - moves[m + 1] - moves[m + 2]);
+    }
+
+    /**
+     * A position in a search tree, with the visits and wins of the
+     * player who moved into it
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Node {
+
+        /** Updates the counters atomically */
+        private static final VarHandle STATS;
+
+        /** Hands out the children not tried yet */
+        private static final VarHandle NEXT;
+
+        /** Reads and writes children safely */
+        private static final VarHandle CHILDREN =
+                MethodHandles.arrayElementVarHandle(Node[].class);
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                STATS = lookup.findVarHandle(Node.class, "stats", long.class);
+                NEXT = lookup.findVarHandle(Node.class, "next", int.class);
+            } catch (ReflectiveOperationException roe){
+                throw new ExceptionInInitializerError(roe);
+            }
+        }
+
+        /** Visits in the high 32 bits, wins in the low 32 */
+        private long stats;
+
+        /** The number of children handed out */
+        private int next;
+
+        /** The moves from here in threes, null until expanded */
+        private volatile int[] moves;
+
+        /** The position after each move, made when first tried */
+        private Node[] children;
+
+        /**
+         * Make a position that hasn't been expanded
+         */
+        Node(){}
+
+        /**
+         * Make a root with its moves already listed
+         *
+         * @param moves the moves, in threes
+         */
+        Node(int[] moves){
+            this.children = new Node[moves.length / 3];
+            this.moves = moves;
+        }
+
+        /**
+         * Get the counters
+         *
+         * @return visits in the high 32 bits, wins in the low 32
+         */
+        long stats(){
+            return (long) STATS.getVolatile(this);
+        }
+
+        /**
+         * Count a visit whose result isn't known yet
+         */
+        void visit(){
+            STATS.getAndAdd(this, 1L << 32);
+        }
+
+        /**
+         * Count a win for the player who moved here
+         */
+        void win(){
+            STATS.getAndAdd(this, 1L);
+        }
+
+        /**
+         * Get a child if it has been made
+         *
+         * @param m the index of its move
+         * @return the child, or null
+         */
+        Node child(int m){
+            return (Node) CHILDREN.getAcquire(children, m);
+        }
+
+        /**
+         * List the moves of this position if no thread has yet
+         *
+         * @param board the position
+         * @param random where to get random numbers
+         * @return the moves, in threes
+         */
+        int[] expand(PileArray board, ThreadLocalRandom random){
+            int[] m = moves;
+            if(m != null)
+                return m;
+            synchronized (this){
+                if(moves == null){
+                    int[] listed = MctsEngine.moves(board, random);
+                    children = new Node[listed.length / 3];
+                    moves = listed;
+                }
+                return moves;
+            }
+        }
+
+        /**
+         * Pick the move to walk down, a move not tried yet if there is
+         * one, else the best by UCT
+         *
+         * @param moves the moves of this position
+         * @return the index of the move, or -1 if the only moves left
+         * are still being made by other threads
+         */
+        int select(int[] moves){
+            int count = moves.length / 3;
+            if((int) NEXT.get(this) < count){
+                int m = (int) NEXT.getAndAdd(this, 1);
+                if(m < count){
+                    CHILDREN.setRelease(children, m, new Node());
+                    return m;
+                }
+            }
+            double log = Math.log(Math.max(stats() >>> 32, 1));
+            int best = -1;
+            double score = Double.NEGATIVE_INFINITY;
+            for(int m = 0; m < count; m++){
+                Node child = child(m);
+                if(child == null)
+                    continue;
+                long s = child.stats();
+                long visits = Math.max(s >>> 32, 1);
+                double uct = (double) (s & 0xFFFF_FFFFL) / visits
+                        + EXPLORATION * Math.sqrt(log / visits);
+                if(uct > score){
+                    best = m;
+                    score = uct;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * What a thread keeps between iterations so playing allocates
+     * nothing
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Worker {
+
+        /** The position being played */
+        private final PileArray board = new PileArray(new int[0]);
+
+        /** The positions walked down this iteration */
+        private Node[] path = new Node[64];
+
+        /**
+         * Run iterations on a tree until the deadline
+         *
+         * @param root the tree
+         * @param piles the position at the root
+         * @param deadline when to stop, from System.nanoTime
+         */
+        void search(Node root, int[] piles, long deadline){
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while(System.nanoTime() < deadline)
+                iterate(root, piles, deadline, random);
+            // let the tree go once the move is picked
+            Arrays.fill(path, null);
+        }
+
+        /**
+         * Walk down the tree, play out a random game from where the
+         * walk ends, and count the result on the way back up
+         *
+         * @param root the tree
+         * @param piles the position at the root
+         * @param deadline when to give up
+         * @param random where to get random numbers
+         */
+        private void iterate(Node root, int[] piles, long deadline,
+                             ThreadLocalRandom random){
+            board.reset(piles);
+            root.visit();
+            path[0] = root;
+            int depth = 1;
+            Node node = root;
+            while(board.size() > 0 && (node == root
+                    || (node.stats() >>> 32) > 1)){
+                int[] moves = node.expand(board, random);
+                int m = node.select(moves);
+                if(m < 0)
+                    return;
+                play(board, moves, 3 * m);
+                node = node.child(m);
+                node.visit();
+                if(depth == path.length)
+                    path = Arrays.copyOf(path, depth * 2);
+                path[depth++] = node;
+            }
+            int result = board.size() == 0 ? 0 : rollout(deadline, random);
+            if(result < 0)
+                return;
+            // result is 1 if the player who moved into node won
+            for(int d = depth - 1; d > 0; d--){
+                if(result == 1)
+                    path[d].win();
+                result ^= 1;
+            }
+        }
+
+        /**
+         * Play random moves until the game is over. Whoever takes the
+         * last stick loses.
+         *
+         * @param deadline when to give up
+         * @param random where to get random numbers
+         * @return 1 if the player who moved last before the game began
+         * won, 0 if they lost, or -1 if the deadline passed
+         */
+        private int rollout(long deadline, ThreadLocalRandom random){
+            int moved = 0;
+            while(true){
+                int pile = random.nextInt(board.size());
+                int p = board.get(pile);
+                int start = random.nextInt(p);
+                board.apply(pile, start, 1 + random.nextInt(p - start));
+                moved++;
+                if(board.size() == 0)
+                    return moved & 1;
+                if(moved % CHECK_EVERY == 0 && System.nanoTime() >= deadline)
+                    return -1;
+            }
+        }
+    }
+
+    /**
+     * Holds the shared engine, so its threads only start if it is used
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Shared {
+
+        /** The engine */
+        static final MctsEngine ENGINE = new MctsEngine(Mode.ROOT,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_BUDGET);
+    }
+}
@@ -38,6 +38,18 @@ public interface ModelListener{
     /** New Game instruction */
     int NEW_GAME = 'N';
 
+    /** Protocol version instruction, answers a VERSIONED_JOIN */
+    int VERSION = 'V';
+
+    /** Move Made instruction that only carries the move */
+    int MOVE_DELTA = 'D';
+
+    /** Session instruction, carries the token to resume a seat with */
+    int SESSION = 'S';
+
+    /** Hint instruction, answers a HINT with the winning move */
+    int HINT = 'H';
+
     /**
      * Report a player quit
      */
@@ -46,9 +58,28 @@ public interface ModelListener{
     /**
      * Report a player made a move
      *
-     * @param piles the new piles formed from the move
+     * @param piles the new piles formed from the move, only good for
+     * the length of the call
      */
-    void moveMade( int[] piles );
+    void moveMade( PileView piles );
+
+    /**
+     * Report a player made a move, along with the move itself. On the
+     * server piles is the board after the move. A client that spoke
+     * version 3 or later gets only the move and the checksum, piles is
+     * null, and it has to apply the move to its own copy of the board.
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     * @param piles the new piles formed from the move, or null, only
+     * good for the length of the call
+     */
+    default void moveApplied(int pile, int start, int amount, int checksum,
+                             PileView piles){
+        moveMade(piles);
+    }
 
     /**
      * Report that a player is waiting for other player
@@ -82,7 +113,48 @@ public interface ModelListener{
     /**
      * Report that a new game has been started
      *
-     * @param piles the list of piles and amounts
+     * @param piles the list of piles and amounts, only good for the
+     * length of the call
+     */
+    void newGame(PileView piles);
+
+    /**
+     * Report that the model is done with this change of state, so any
+     * messages held back for this player can be sent together
+     */
+    default void flush(){}
+
+    /**
+     * Give the player the token it can take its seat back with if its
+     * connection drops. Only clients that speak version 4 are told, the
+     * rest can't resume and lose their seat with their connection.
+     *
+     * @param token the token
+     */
+    default void session(long token){}
+
+    /**
+     * Tell a client the protocol version the server picked, before
+     * anything else. Clients that send JOIN are never told, they speak
+     * version 1.
+     *
+     * @param version the version
+     */
+    default void version(int version){}
+
+    /**
+     * Answer a request for a hint. Only clients that speak version 5 are
+     * told, the rest never ask.
+     *
+     * @param move the move that wins for the player to move, as
+     * {pile, start, amount}, or null if every move loses
+     */
+    default void hint(int[] move){}
+
+    /**
+     * Answer a request for a hint the server didn't work out, because it
+     * doesn't give hints or was too busy. Only clients that speak
+     * version 5 are told.
      */
-    void newGame(int[] piles);
+    default void noHint(){}
 }
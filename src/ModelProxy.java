@@ -7,11 +7,12 @@
  * requests to the server
  */
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.net.SocketAddress;
 
 /**
  * The Model proxy, implementation of the ViewListener that defines the
@@ -22,6 +23,21 @@ import java.net.Socket;
  */
 public class ModelProxy implements ViewListener {
 
+    /** Milliseconds to wait before the first attempt to reconnect */
+    private static final long RECONNECT_BACKOFF = 100;
+
+    /** Most milliseconds to wait between attempts to reconnect */
+    private static final long RECONNECT_BACKOFF_MAX = 2_000;
+
+    /**
+     * Milliseconds to keep trying to reconnect, matching how long the
+     * server holds a dropped seat
+     */
+    private static final long RECONNECT_WINDOW = 30_000;
+
+    /** Milliseconds a single attempt to reconnect may take */
+    private static final int CONNECT_TIMEOUT = 2_000;
+
     /** The socket we are communication with */
     private Socket socket;
 
@@ -34,16 +50,65 @@ public class ModelProxy implements ViewListener {
     /** The actual listener, only started when a connection is needed */
     private ModelListener listener;
 
+    /** The protocol version asked for when joining */
+    private final int requestedVersion;
+
+    /** The protocol version spoken with the server */
+    private volatile int version = WireCodec.V1;
+
+    /** The thread input is read on, once there is a listener */
+    private Thread inputThread;
+
+    /** The kind of thread input is read on */
+    private final ThreadMode threadMode;
+
+    /** Where the server is, for reconnecting */
+    private final SocketAddress server;
+
+    /** The token the server gave for resuming our seat, or 0 */
+    private volatile long sessionToken;
+
+    /** If the game is over, so a dropped connection is expected */
+    private volatile boolean quitting;
+
     /**
      * Create a new ModelProxy, get streams to
      *
      * @param socket the server socket
      */
     public ModelProxy(Socket socket){
+        this(socket, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * Create a new ModelProxy that reads input on a given kind of thread.
+     * It speaks version 1, the only version every server understands, a
+     * server from before versions were added exits on a versioned join.
+     *
+     * @param socket the socket
+     * @param threadMode the kind of thread to read input on
+     */
+    public ModelProxy(Socket socket, ThreadMode threadMode){
+        this(socket, threadMode, WireCodec.V1);
+    }
+
+    /**
+     * Create a new ModelProxy that asks for a given protocol version
+     *
+     * @param socket the socket
+     * @param threadMode the kind of thread to read input on
+     * @param requestedVersion the protocol version to ask for
+     */
+    public ModelProxy(Socket socket, ThreadMode threadMode,
+                      int requestedVersion){
+        this.threadMode = threadMode;
+        this.requestedVersion = requestedVersion;
+        this.server = socket.getRemoteSocketAddress();
         try{
             this.socket = socket;
             this.socket.setTcpNoDelay(true);
-            output = new DataOutputStream(socket.getOutputStream());
+            output = new DataOutputStream(new BufferedOutputStream(
+                    socket.getOutputStream()));
             input = new DataInputStream(socket.getInputStream());
         } catch (IOException ioe){
             errorMessage(ioe);
@@ -57,7 +122,17 @@ public class ModelProxy implements ViewListener {
      */
     public void setListener(ModelListener listener){
         this.listener = listener;
-        new InputThread().start();
+        inputThread = threadMode.start("ModelProxy-input", new InputThread());
+    }
+
+    /**
+     * Wait for the connection to end. Virtual input threads don't keep
+     * the JVM running, so a client with nothing else to do waits here.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        inputThread.join();
     }
 
     /**
@@ -69,15 +144,15 @@ public class ModelProxy implements ViewListener {
      * @param amount the ending amount to take
      */
     @Override
-    public void moveRequest(int pile, int start, int amount) {
+    public synchronized void moveRequest(int pile, int start, int amount) {
         try{
             output.writeByte(ViewListener.MOVE_REQUEST);
-            output.writeByte(pile);
-            output.writeByte(start);
-            output.write(amount);
+            WireCodec.writeInt(output, version, pile);
+            WireCodec.writeInt(output, version, start);
+            WireCodec.writeInt(output, version, amount);
             output.flush();
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -85,12 +160,12 @@ public class ModelProxy implements ViewListener {
      * Restart the game, to a fresh one
      */
     @Override
-    public void newGame() {
+    public synchronized void newGame() {
         try{
             output.writeByte(ViewListener.NEW_GAME);
             output.flush();
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -101,13 +176,18 @@ public class ModelProxy implements ViewListener {
      * @param name the name of the player
      */
     @Override
-    public void join(ModelListener view, String name) {
+    public synchronized void join(ModelListener view, String name) {
         try{
-            output.write(ViewListener.JOIN);
+            if(requestedVersion > WireCodec.V1) {
+                output.write(ViewListener.VERSIONED_JOIN);
+                output.writeByte(requestedVersion);
+            } else {
+                output.write(ViewListener.JOIN);
+            }
             output.writeUTF(name);
             output.flush();
         } catch (IOException ioe){
-            errorMessage(ioe);
+            lost(ioe);
         }
     }
 
@@ -115,15 +195,131 @@ public class ModelProxy implements ViewListener {
      * Cause server to end the game
      */
     @Override
-    public void quit() {
+    public synchronized void quit() {
+        quitting = true;
         try{
             output.write(ViewListener.QUIT);
             output.flush();
         } catch (IOException ioe){
-            errorMessage(ioe);
+            lost(ioe);
         }
     }
 
+    /**
+     * Ask the server for the whole board
+     *
+     * @param view the view that wants the board
+     */
+    @Override
+    public synchronized void resync(ModelListener view) {
+        try{
+            output.write(ViewListener.RESYNC);
+            output.flush();
+        } catch (IOException ioe){
+            lost(ioe);
+        }
+    }
+
+    /**
+     * Ask the server for the winning move. Servers only answer clients
+     * that speak version 5, and older ones don't know the request, so
+     * below version 5 the view is told there is no hint instead.
+     *
+     * @param view the view that wants the hint
+     */
+    @Override
+    public synchronized void hint(ModelListener view) {
+        if(version < WireCodec.V5) {
+            view.noHint();
+            return;
+        }
+        try{
+            output.write(ViewListener.HINT);
+            output.flush();
+        } catch (IOException ioe){
+            lost(ioe);
+        }
+    }
+
+    /**
+     * Ask the server for our seat back after the connection dropped
+     *
+     * @param view the view that is taking the seat
+     * @param token the token the server gave when we joined
+     */
+    @Override
+    public synchronized void resume(ModelListener view, long token) {
+        try{
+            output.write(ViewListener.RESUME);
+            output.writeByte(requestedVersion);
+            output.writeLong(token);
+            output.flush();
+        } catch (IOException ioe){
+            lost(ioe);
+        }
+    }
+
+    /**
+     * Get the token the server gave for resuming our seat
+     *
+     * @return the token, or 0 if the server didn't give one
+     */
+    public long getSessionToken(){
+        return sessionToken;
+    }
+
+    /**
+     * Close a connection that failed to write, the input thread then
+     * notices and reconnects or quits
+     *
+     * @param exc the IOException
+     */
+    private void lost(IOException exc){
+        try {
+            socket.close();
+        } catch (IOException ignored){}
+    }
+
+    /**
+     * Connect to the server again and ask for our seat back, backing
+     * off between attempts for as long as the server holds the seat
+     *
+     * @return true if a new connection was made
+     */
+    private boolean reconnect(){
+        if(server == null)
+            return false;
+        long deadline = System.nanoTime() + RECONNECT_WINDOW * 1_000_000;
+        long backoff = RECONNECT_BACKOFF;
+        while(!quitting && System.nanoTime() < deadline){
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie){
+                return false;
+            }
+            backoff = Math.min(backoff * 2, RECONNECT_BACKOFF_MAX);
+            Socket fresh = new Socket();
+            try {
+                fresh.connect(server, CONNECT_TIMEOUT);
+                fresh.setTcpNoDelay(true);
+                synchronized (this){
+                    socket.close();
+                    socket = fresh;
+                    output = new DataOutputStream(new BufferedOutputStream(
+                            fresh.getOutputStream()));
+                    input = new DataInputStream(fresh.getInputStream());
+                }
+                resume(listener, sessionToken);
+                return true;
+            } catch (IOException ioe){
+                try {
+                    fresh.close();
+                } catch (IOException ignored){}
+            }
+        }
+        return false;
+    }
+
     /**
      * General error handler for user defined exceptions
      *
@@ -146,76 +342,95 @@ public class ModelProxy implements ViewListener {
         System.exit(1);
     }
 
+    /**
+     * Read one message from the server and pass it to the listener
+     *
+     * @throws IOException if the read fails, EOFException once the
+     * server has closed the connection
+     */
+    void readMessage() throws IOException {
+        int instruction = input.readByte();
+        switch (instruction) {
+            case ModelListener.QUIT:
+                quitting = true;
+                listener.quit();
+                break;
+            case ModelListener.MOVE_MADE:
+                int[] piles = WireCodec.readPiles(input, version);
+                listener.moveMade(new PileArray(piles));
+                break;
+            case ModelListener.MOVE_DELTA:
+                int pile = WireCodec.readInt(input, version);
+                int start = WireCodec.readInt(input, version);
+                int amount = WireCodec.readInt(input, version);
+                int checksum = input.readInt();
+                listener.moveApplied(pile, start, amount, checksum, null);
+                break;
+            case ModelListener.WAITING_OTHER_PLAYER:
+                listener.waitingForOtherPlayer();
+                break;
+            case ModelListener.MY_TURN:
+                listener.myTurn();
+                break;
+            case ModelListener.OTHER_TURN:
+                listener.otherTurn(input.readUTF());
+                break;
+            case ModelListener.YOU_WON:
+                listener.youWon();
+                break;
+            case ModelListener.OTHER_WIN:
+                listener.otherWin(input.readUTF());
+                break;
+            case ModelListener.NEW_GAME:
+                listener.newGame(new PileArray(
+                        WireCodec.readPiles(input, version)));
+                break;
+            case ModelListener.VERSION:
+                version = input.readByte();
+                listener.version(version);
+                break;
+            case ModelListener.SESSION:
+                sessionToken = input.readLong();
+                break;
+            case ModelListener.HINT:
+                int status = input.readByte();
+                if(status == WireCodec.HINT_NONE)
+                    listener.noHint();
+                else if(status == WireCodec.HINT_MOVE)
+                    listener.hint(new int[]{WireCodec.readInt(input, version),
+                            WireCodec.readInt(input, version),
+                            WireCodec.readInt(input, version)});
+                else
+                    listener.hint(null);
+                break;
+            default:
+                errorMessage(String.format(
+                        "Bad Instruction '%s'\n", instruction));
+        }
+    }
+
     /**
      * The thread that handles input from network and decodes them
      *
      * @author Chris Tremblay (cst1465)
      * @version 1.0
      */
-    private class InputThread extends Thread{
+    private class InputThread implements Runnable {
         /**
-         * Run the input handling thread
+         * Run the input handling thread, reconnecting when the connection
+         * drops in the middle of a game we hold a session for
          */
         public void run(){
-            int instruction, pile, amount, size;
-            int[] piles;
-            String name;
-
             try {
                 while (true) {
-                    instruction = input.readByte();
-                    switch (instruction) {
-                        case ModelListener.QUIT:
-                            listener.quit();
-                            break;
-                        case ModelListener.MOVE_MADE:
-                            size = input.readByte();
-                            piles = new int[size];
-                            pile = 0;
-                            while(pile != size){
-                                amount = input.readByte();
-                                piles[pile] = amount;
-                                pile++;
-                            }
-                            listener.moveMade(piles);
-                            break;
-                        case ModelListener.WAITING_OTHER_PLAYER:
-                            listener.waitingForOtherPlayer();
+                    try {
+                        while (true)
+                            readMessage();
+                    } catch (IOException ioe) {
+                        if (quitting || sessionToken == 0 || !reconnect())
                             break;
-                        case ModelListener.MY_TURN:
-                            listener.myTurn();
-                            break;
-                        case ModelListener.OTHER_TURN:
-                            name = input.readUTF();
-                            listener.otherTurn(name);
-                            break;
-                        case ModelListener.YOU_WON:
-                            listener.youWon();
-                            break;
-                        case ModelListener.OTHER_WIN:
-                            name = input.readUTF();
-                            listener.otherWin(name);
-                            break;
-                        case ModelListener.NEW_GAME:
-                            size = input.readByte();
-                            piles = new int[size];
-                            pile = 0;
-                            while(pile != size){
-                                amount = input.readByte();
-                                piles[pile] = amount;
-                                pile++;
-                            }
-                            listener.newGame(piles);
-                            break;
-                        default:
-                            errorMessage(String.format(
-                                    "Bad Instruction '%s'\n", instruction));
                     }
                 }
-            } catch (EOFException ignored) {
-                // squash
-            } catch (IOException ioe){
-                errorMessage(ioe);
             } finally {
                 try{
                     listener.quit();
@@ -0,0 +1,705 @@
+/*
+ * @filename MoveJournal.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * An append only journal of every game's moves
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Records every game's start, accepted moves, restarts and quit, so a
+ * game can be read back after its NimModel is gone. Records are
+ * appended to a memory mapped segment file, so an append is a copy
+ * into memory. Once copied, a record belongs to the operating system
+ * and survives the server dying.
+ *
+ * Getting records onto the disk is left to one background thread. It
+ * forces whatever has been appended since its last force, and by the
+ * time that returns the next batch has built up, so a single fsync
+ * covers every move made while the one before it was running. Moves
+ * never wait for the disk. A machine crash loses at most the records
+ * appended since the last force finished. sync() waits for that force,
+ * for anything that needs to know.
+ *
+ * Appends take a lock for as long as the copy takes, so records are in
+ * the order they were appended and a record can only be torn at the
+ * end of the journal. Every record carries a CRC of its body, and
+ * reading stops at the first one that doesn't match.
+ *
+ * Segments are named journal-NNNNNNNN.nj and are never reopened for
+ * writing, a new journal starts a segment after the last one there.
+ * A record's position is its segment number in the high 32 bits and
+ * its offset in the low 32, so positions keep growing across restarts
+ * and tell a reader which records came after a snapshot.
+ *
+ * Segment layout, big endian:
+ * <pre>
+ *   0  int   magic "NIMJ"
+ *   4  int   format version
+ *   8  long  segment number
+ *  16  records, then zeros:
+ *        int   length of the body, at least 1
+ *        int   CRC32C of the body
+ *        byte  record type
+ *        long  game id
+ *        ...   fields of the record type
+ * </pre>
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class MoveJournal implements AutoCloseable {
+
+    /**
+     * A game started: names, each player's session token, then the
+     * number of piles and each pile. Version 1 segments have no tokens.
+     * A name is an unsigned short length then that many bytes of UTF-8
+     */
+    static final byte START = 'S';
+
+    /** An accepted move: pile, start, amount */
+    static final byte MOVE = 'M';
+
+    /** The game was restarted on its original piles */
+    static final byte NEW_GAME = 'N';
+
+    /** The game ended */
+    static final byte QUIT = 'Q';
+
+    /** "NIMJ" */
+    private static final int MAGIC = 0x4E494D4A;
+
+    /** The layout described above */
+    private static final int FORMAT_VERSION = 2;
+
+    /** The layout before START records carried session tokens */
+    private static final int FORMAT_NO_TOKENS = 1;
+
+    /** Bytes before the first record of a segment */
+    private static final int HEADER = 16;
+
+    /** Bytes before a record's body */
+    private static final int RECORD_HEADER = 8;
+
+    /** Most bytes of a player name kept, its length is unsigned short */
+    static final int MAX_NAME = 0xFFFF;
+
+    /** Prefix of segment file names */
+    private static final String PREFIX = "journal-";
+
+    /** Suffix of segment file names */
+    private static final String SUFFIX = ".nj";
+
+    /** Bytes in a segment unless given another size */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /** Nanoseconds the syncer sleeps when there is nothing to force */
+    private static final long IDLE_NANOS = 1_000_000;
+
+    /** Where the segments go */
+    private final Path directory;
+
+    /** Bytes in a segment */
+    private final int segmentSize;
+
+    /** The segment being appended to, guarded by this */
+    private Segment current;
+
+    /** The oldest segment not yet forced all the way */
+    private Segment unsynced;
+
+    /** Set once a segment couldn't be made, nothing more is journaled */
+    private boolean failed;
+
+    /** CRC of the record being appended, guarded by this */
+    private final CRC32C crc = new CRC32C();
+
+    /** Forces segments to disk */
+    private final Thread syncer;
+
+    /** Position everything before is on disk, only moved by the syncer */
+    private volatile long synced;
+
+    /** Set to stop the syncer once everything is forced */
+    private volatile boolean closing;
+
+    /**
+     * Open a journal with the default segment size
+     *
+     * @param directory where the segments go, made if missing
+     * @throws IOException if the first segment can't be made
+     */
+    public MoveJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open a journal
+     *
+     * @param directory where the segments go, made if missing
+     * @param segmentSize bytes in a segment
+     * @throws IOException if the first segment can't be made
+     */
+    public MoveJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> old = segments(directory);
+        long number = old.isEmpty() ? 0
+                : segmentNumber(old.get(old.size() - 1)) + 1;
+        current = new Segment(number);
+        unsynced = current;
+        syncer = new Thread(this::syncLoop, "journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Journal the start of a game
+     *
+     * @param game the game id
+     * @param player1 the name of player1
+     * @param player2 the name of player2
+     * @param token1 player1's session token, or 0
+     * @param token2 player2's session token, or 0
+     * @param piles the original piles
+     * @return the position of the record, or -1 if the journal failed
+     */
+    public long start(long game, String player1, String player2,
+                      long token1, long token2, int[] piles){
+        byte[] name1 = nameBytes(player1);
+        byte[] name2 = nameBytes(player2);
+        int length = 1 + 8 + 2 + name1.length + 2 + name2.length +
+                8 + 8 + 4 + 4 * piles.length;
+        synchronized(this) {
+            ByteBuffer buffer = reserve(length);
+            if(buffer == null)
+                return -1;
+            buffer.put(START).putLong(game)
+                    .putShort((short) name1.length).put(name1)
+                    .putShort((short) name2.length).put(name2)
+                    .putLong(token1).putLong(token2)
+                    .putInt(piles.length);
+            for(int pile : piles)
+                buffer.putInt(pile);
+            return commit(buffer, length);
+        }
+    }
+
+    /**
+     * Journal an accepted move
+     *
+     * @param game the game id
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @return the position of the record, or -1 if the journal failed
+     */
+    public long move(long game, int pile, int start, int amount){
+        int length = 1 + 8 + 12;
+        synchronized(this) {
+            ByteBuffer buffer = reserve(length);
+            if(buffer == null)
+                return -1;
+            buffer.put(MOVE).putLong(game).putInt(pile).putInt(start)
+                    .putInt(amount);
+            return commit(buffer, length);
+        }
+    }
+
+    /**
+     * Journal a restart
+     *
+     * @param game the game id
+     * @return the position of the record, or -1 if the journal failed
+     */
+    public long newGame(long game){
+        return event(NEW_GAME, game);
+    }
+
+    /**
+     * Journal the end of a game
+     *
+     * @param game the game id
+     * @return the position of the record, or -1 if the journal failed
+     */
+    public long quit(long game){
+        return event(QUIT, game);
+    }
+
+    /**
+     * Journal a record with no fields
+     *
+     * @param type the record type
+     * @param game the game id
+     * @return the position of the record, or -1 if the journal failed
+     */
+    private synchronized long event(byte type, long game){
+        ByteBuffer buffer = reserve(1 + 8);
+        if(buffer == null)
+            return -1;
+        buffer.put(type).putLong(game);
+        return commit(buffer, 1 + 8);
+    }
+
+    /**
+     * Find room for a record, moving to a new segment if this one is
+     * full. Called holding the lock.
+     *
+     * @param length bytes in the record's body
+     * @return the segment's buffer, positioned at the body, or null if
+     * the journal has failed
+     */
+    private ByteBuffer reserve(int length){
+        if(RECORD_HEADER + length > segmentSize - HEADER)
+            throw new IllegalArgumentException(
+                    "record bigger than a segment: " + length);
+        if(failed)
+            return null;
+        if(current.position + RECORD_HEADER + length > segmentSize){
+            try {
+                Segment next = new Segment(current.number + 1);
+                current.next = next;
+                current = next;
+            } catch (IOException ioe){
+                // the games go on without a journal
+                failed = true;
+                System.err.println("MoveJournal: I/O error");
+                ioe.printStackTrace(System.err);
+                return null;
+            }
+        }
+        ByteBuffer buffer = current.buffer;
+        buffer.position(current.position + RECORD_HEADER);
+        return buffer;
+    }
+
+    /**
+     * Finish a record, its body already written: fill in its header
+     * and let the syncer see it. Called holding the lock.
+     *
+     * @param buffer the segment's buffer
+     * @param length bytes in the record's body
+     * @return the position of the record
+     */
+    private long commit(ByteBuffer buffer, int length){
+        int at = current.position;
+        crc.reset();
+        crc.update(buffer.slice(at + RECORD_HEADER, length));
+        buffer.putInt(at + 4, (int) crc.getValue());
+        buffer.putInt(at, length);
+        current.position = at + RECORD_HEADER + length;
+        return position(current.number, at);
+    }
+
+    /**
+     * Make a position out of a segment number and an offset in it
+     *
+     * @param segment the segment number
+     * @param offset the offset in the segment
+     * @return the position
+     */
+    static long position(long segment, int offset){
+        return segment << 32 | offset;
+    }
+
+    /**
+     * Get the position the next record will be at or after
+     *
+     * @return the position
+     */
+    public synchronized long position(){
+        return position(current.number, current.position);
+    }
+
+    /**
+     * Force appended records to disk until closed, then force the rest
+     */
+    private void syncLoop(){
+        while(true){
+            boolean done = closing;
+            if(!force() && done)
+                return;
+            if(!done)
+                LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    /**
+     * Force everything appended so far
+     *
+     * @return true if there was anything to force
+     */
+    private boolean force(){
+        boolean forced = false;
+        while(true){
+            Segment segment = unsynced;
+            Segment next = segment.next;
+            int end = segment.position;
+            if(end > segment.synced){
+                segment.buffer.force(segment.synced, end - segment.synced);
+                segment.synced = end;
+                synced = position(segment.number, end);
+                forced = true;
+            }
+            if(next == null || segment.position != end)
+                return forced;
+            // the segment is full, nothing more will be appended to it
+            unsynced = next;
+        }
+    }
+
+    /**
+     * Wait until everything appended before the call is on disk
+     */
+    public void sync(){
+        long target = position();
+        while(synced < target && syncer.isAlive()){
+            LockSupport.unpark(syncer);
+            LockSupport.parkNanos(IDLE_NANOS / 10);
+        }
+    }
+
+    /**
+     * Force everything to disk and stop the syncer
+     */
+    @Override
+    public void close(){
+        closing = true;
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join();
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * List the segments in a directory, oldest first
+     *
+     * @param directory the directory
+     * @return the segment files
+     * @throws IOException if the directory can't be read
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if(!Files.isDirectory(directory))
+            return segments;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                PREFIX + "*" + SUFFIX)){
+            for(Path file : files)
+                segments.add(file);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * Get the number of a segment from its file name
+     *
+     * @param segment the segment file
+     * @return its number
+     */
+    static long segmentNumber(Path segment){
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(),
+                name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Told about each record read back from a journal
+     */
+    public interface Visitor {
+
+        /**
+         * A game started
+         *
+         * @param position the position of the record
+         * @param game the game id
+         * @param player1 the name of player1
+         * @param player2 the name of player2
+         * @param token1 player1's session token, or 0
+         * @param token2 player2's session token, or 0
+         * @param piles the original piles
+         */
+        void start(long position, long game, String player1, String player2,
+                   long token1, long token2, int[] piles);
+
+        /**
+         * A move was accepted
+         *
+         * @param position the position of the record
+         * @param game the game id
+         * @param pile the pile number (zero indexed)
+         * @param start the start amount taken
+         * @param amount the amount taken from the start index
+         */
+        void move(long position, long game, int pile, int start, int amount);
+
+        /**
+         * A game was restarted
+         *
+         * @param position the position of the record
+         * @param game the game id
+         */
+        void newGame(long position, long game);
+
+        /**
+         * A game ended
+         *
+         * @param position the position of the record
+         * @param game the game id
+         */
+        void quit(long position, long game);
+    }
+
+    /**
+     * Read every record of a segment, stopping at the end of the
+     * records or at the first torn one
+     *
+     * @param segment the segment file
+     * @param visitor told about each record
+     * @return the number of records read
+     * @throws IOException if the file can't be read or isn't a segment
+     */
+    static long read(Path segment, Visitor visitor) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.READ)){
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if(map.capacity() < HEADER || map.getInt(0) != MAGIC ||
+                (map.getInt(4) != FORMAT_VERSION &&
+                        map.getInt(4) != FORMAT_NO_TOKENS))
+            throw new IOException(segment + " is not a journal segment");
+        boolean tokens = map.getInt(4) != FORMAT_NO_TOKENS;
+        long number = map.getLong(8);
+        CRC32C check = new CRC32C();
+        long records = 0;
+        int at = HEADER;
+        while(at + RECORD_HEADER <= map.capacity()){
+            int length = map.getInt(at);
+            if(length <= 0 || at + RECORD_HEADER + length > map.capacity())
+                break;
+            check.reset();
+            check.update(map.slice(at + RECORD_HEADER, length));
+            if((int) check.getValue() != map.getInt(at + 4))
+                break;
+            ByteBuffer body = map.slice(at + RECORD_HEADER, length);
+            long position = position(number, at);
+            byte type = body.get();
+            long game = body.getLong();
+            switch(type){
+                case START:
+                    String name1 = readName(body);
+                    String name2 = readName(body);
+                    long token1 = tokens ? body.getLong() : 0;
+                    long token2 = tokens ? body.getLong() : 0;
+                    int[] piles = new int[body.getInt()];
+                    for(int i = 0; i < piles.length; i++)
+                        piles[i] = body.getInt();
+                    visitor.start(position, game, name1, name2, token1,
+                            token2, piles);
+                    break;
+                case MOVE:
+                    visitor.move(position, game, body.getInt(), body.getInt(),
+                            body.getInt());
+                    break;
+                case NEW_GAME:
+                    visitor.newGame(position, game);
+                    break;
+                case QUIT:
+                    visitor.quit(position, game);
+                    break;
+                default:
+                    throw new IOException(segment + ": unknown record type " +
+                            type + " at " + at);
+            }
+            records++;
+            at += RECORD_HEADER + length;
+        }
+        return records;
+    }
+
+    /**
+     * Encode a player name, cutting it short at a character if it is
+     * more than MAX_NAME bytes
+     *
+     * @param name the name
+     * @return at most MAX_NAME bytes of UTF-8
+     */
+    static byte[] nameBytes(String name){
+        return nameBytes(name, MAX_NAME);
+    }
+
+    /**
+     * Encode a player name, cutting it short at a character if it is
+     * more than a given number of bytes
+     *
+     * @param name the name
+     * @param max the most bytes to keep
+     * @return at most max bytes of UTF-8
+     */
+    static byte[] nameBytes(String name, int max){
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length <= max)
+            return bytes;
+        // don't keep part of a character that would be cut in two
+        int end = max;
+        while((bytes[end] & 0xC0) == 0x80)
+            end--;
+        return Arrays.copyOf(bytes, end);
+    }
+
+    /**
+     * Read a player name
+     *
+     * @param body the record body
+     * @return the name
+     */
+    private static String readName(ByteBuffer body){
+        byte[] bytes = new byte[body.getShort() & 0xFFFF];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Print every record of a journal, one per line
+     *
+     * @param args the journal directory
+     */
+    public static void main(String[] args) {
+        if(args.length != 1){
+            System.err.println("Usage: java MoveJournal journal-directory");
+            System.exit(1);
+        }
+        Visitor printer = new Visitor() {
+
+            /**
+             * Print a game start
+             *
+             * @param position the position of the record
+             * @param game the game id
+             * @param player1 the name of player1
+             * @param player2 the name of player2
+             * @param token1 player1's session token, or 0
+             * @param token2 player2's session token, or 0
+             * @param piles the original piles
+             */
+            @Override
+            public void start(long position, long game, String player1,
+                              String player2, long token1, long token2,
+                              int[] piles) {
+                System.out.printf("game %d start %s vs. %s piles %s\n", game,
+                        player1, player2, Arrays.toString(piles));
+            }
+
+            /**
+             * Print a move
+             *
+             * @param position the position of the record
+             * @param game the game id
+             * @param pile the pile number (zero indexed)
+             * @param start the start amount taken
+             * @param amount the amount taken from the start index
+             */
+            @Override
+            public void move(long position, long game, int pile, int start,
+                             int amount) {
+                System.out.printf("game %d move %d %d %d\n", game, pile,
+                        start, amount);
+            }
+
+            /**
+             * Print a restart
+             *
+             * @param position the position of the record
+             * @param game the game id
+             */
+            @Override
+            public void newGame(long position, long game) {
+                System.out.printf("game %d new game\n", game);
+            }
+
+            /**
+             * Print a game end
+             *
+             * @param position the position of the record
+             * @param game the game id
+             */
+            @Override
+            public void quit(long position, long game) {
+                System.out.printf("game %d quit\n", game);
+            }
+        };
+        try {
+            for(Path segment : segments(Path.of(args[0])))
+                read(segment, printer);
+        } catch (IOException ioe){
+            System.err.println("MoveJournal: I/O error");
+            ioe.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * One mapped segment file
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Segment {
+
+        /** The segment number */
+        final long number;
+
+        /** The mapped file */
+        final MappedByteBuffer buffer;
+
+        /** Where the next record goes, written holding the journal lock */
+        volatile int position;
+
+        /** Bytes forced to disk, only used by the syncer */
+        int synced;
+
+        /** The segment after this one, once this one is full */
+        volatile Segment next;
+
+        /**
+         * Make and map a new segment file
+         *
+         * @param number the segment number
+         * @throws IOException if the file can't be made
+         */
+        Segment(long number) throws IOException {
+            this.number = number;
+            Path path = directory.resolve(String.format("%s%08d%s", PREFIX,
+                    number, SUFFIX));
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)){
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        segmentSize);
+            }
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION)
+                    .putLong(8, number);
+            position = HEADER;
+        }
+    }
+}
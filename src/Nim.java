@@ -18,7 +18,7 @@ public class Nim {
 
     /** The usage message of the client */
     private final static String USAGE= "Usage: java Nim hostname" +
-            " port-number player-name";
+            " port-number player-name [platform|virtual [version]]";
 
     /**
      * Checks command line arguments and connects to socket
@@ -27,7 +27,7 @@ public class Nim {
      */
     public static void main(String[] args) {
         // Check that command line args are right
-        if(args.length != 3){
+        if(args.length < 3 || args.length > 5){
             System.err.println(USAGE);
             System.exit(1);
         }
@@ -48,6 +48,34 @@ public class Nim {
         // get player name
         String name = args[2];
 
+        // get the kind of thread to read input on
+        ThreadMode threadMode = ThreadMode.PLATFORM;
+        if(args.length >= 4){
+            threadMode = ThreadMode.parse(args[3]);
+            if(threadMode == null){
+                System.err.printf("'%s' is not a thread mode\n", args[3]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        // get the protocol version to ask for, servers from before
+        // versions were added only understand version 1
+        int version = WireCodec.V1;
+        if(args.length == 5){
+            try {
+                version = Integer.parseInt(args[4]);
+            } catch (NumberFormatException nfe){
+                version = -1;
+            }
+            if(version < WireCodec.V1 || version > WireCodec.LATEST){
+                System.err.printf("'%s' is not a protocol version\n",
+                        args[4]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
         // Try creating socket
         try{
             // get connection to server
@@ -55,15 +83,21 @@ public class Nim {
             socket.connect(new InetSocketAddress(host, port));
 
             // Set up ModelProxy and listener
-            ModelProxy proxy = new ModelProxy(socket);
+            ModelProxy proxy = new ModelProxy(socket, threadMode, version);
             NimView view = new NimView();
             proxy.setListener(view);
             view.setListener(proxy);
 
             proxy.join(view, name);
+
+            // the view reads its input on the proxy's thread, keep the
+            // client running until it is done
+            proxy.awaitClose();
         } catch (IOException ioe){
             error(ioe);
             System.exit(1);
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -0,0 +1,386 @@
+/*
+ * @filename NimLoad.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A headless load generator for the Game of Nim server
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Opens many connections to a NimServer, each through a ModelProxy with
+ * a player that makes random legal moves by itself, and measures how
+ * long the server takes to answer each move.
+ *
+ * The players share one schedule of moves spaced evenly at the target
+ * rate, a player whose turn it is takes the next free slot and waits
+ * for it. Latency is measured from the slot, not from when the move
+ * was actually sent, so when the server falls behind and moves go out
+ * late the lateness is counted too, rather than hidden by the load
+ * generator slowing down with it. A rate of 0 sends every move as soon
+ * as it can be made, and measures from the send. No moves are made
+ * until every connection is open.
+ *
+ * The server pairs the connections up, so there should be an even
+ * number of them unless it fills empty seats with bots. The winner of
+ * each game starts the next one.
+ *
+ * Given the hostname local, the load generator runs a matchmaker of
+ * its own and connects to it through a LocalTransport, so the same load
+ * can be measured without sockets. The port and version are ignored.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class NimLoad {
+
+    /** The usage message */
+    private static final String USAGE = "Usage: java NimLoad hostname" +
+            " port-number connections moves-per-second seconds [version]";
+
+    /** The hostname that runs the server in this process */
+    private static final String LOCAL = "local";
+
+    /** Milliseconds between reports */
+    private static final long REPORT_INTERVAL = 1_000;
+
+    /** Move latencies, in nanoseconds, over the whole run */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /** Move latencies, in nanoseconds, since the last report */
+    private final AtomicReference<LatencyHistogram> interval =
+            new AtomicReference<>(new LatencyHistogram());
+
+    /** Moves answered */
+    private final LongAdder moves = new LongAdder();
+
+    /** Games finished */
+    private final LongAdder games = new LongAdder();
+
+    /** Times a player's board drifted and had to be sent again */
+    private final LongAdder resyncs = new LongAdder();
+
+    /** Nanoseconds between moves, or 0 to not pace them */
+    private final long spacing;
+
+    /** Start of the next free slot, in System.nanoTime */
+    private final AtomicLong nextSlot = new AtomicLong();
+
+    /** Opened once every connection is open and moves may start */
+    private final CountDownLatch go = new CountDownLatch(1);
+
+    /**
+     * Create a load generator
+     *
+     * @param rate moves per second across every connection, or 0 for
+     * as many as possible
+     */
+    public NimLoad(double rate){
+        spacing = rate > 0 ? (long) (1e9 / rate) : 0;
+    }
+
+    /**
+     * Run the load generator
+     *
+     * @param args the arguments as defined in the usage message
+     */
+    public static void main(String[] args) {
+        if(args.length != 5 && args.length != 6){
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        String host = args[0];
+        int port = 0, connections = 0, seconds = 0;
+        double rate = 0;
+        int version = WireCodec.LATEST;
+        try {
+            port = Integer.parseInt(args[1]);
+            connections = Integer.parseInt(args[2]);
+            rate = Double.parseDouble(args[3]);
+            seconds = Integer.parseInt(args[4]);
+            if(args.length == 6)
+                version = Integer.parseInt(args[5]);
+        } catch (NumberFormatException nfe){
+            System.err.printf("'%s' is not a valid number\n",
+                    nfe.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        NimLoad load = new NimLoad(rate);
+        if(host.equals(LOCAL)) {
+            LocalTransport transport = new LocalTransport(
+                    new Matchmaker(new int[]{3, 4, 5}, null),
+                    ThreadMode.VIRTUAL);
+            transport.start();
+            for(int i = 0; i < connections; i++)
+                load.connect(transport, "load-" + i);
+            load.run(seconds);
+            System.exit(0);
+        }
+        try {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            for(int i = 0; i < connections; i++)
+                load.connect(address, "load-" + i, version);
+        } catch (IOException ioe){
+            System.err.println("NimLoad: I/O error");
+            ioe.printStackTrace(System.err);
+            System.exit(1);
+        }
+        load.run(seconds);
+        System.exit(0);
+    }
+
+    /**
+     * Open a connection and join a game with a player that plays itself
+     *
+     * @param address the server
+     * @param name the player name
+     * @param version the protocol version to ask for
+     * @throws IOException if the connection fails
+     */
+    public void connect(InetSocketAddress address, String name, int version)
+            throws IOException {
+        Socket socket = new Socket();
+        socket.connect(address);
+        ModelProxy proxy = new ModelProxy(socket, ThreadMode.VIRTUAL,
+                version);
+        Player player = new Player(proxy);
+        proxy.setListener(player);
+        proxy.join(player, name);
+    }
+
+    /**
+     * Open a connection through memory and join a game with a player
+     * that plays itself
+     *
+     * @param transport the server's in memory transport
+     * @param name the player name
+     */
+    public void connect(LocalTransport transport, String name){
+        LocalTransport.Client client = transport.connect();
+        Player player = new Player(client);
+        client.setListener(player);
+        client.join(player, name);
+    }
+
+    /**
+     * Let the players move, report on the moves every second for a
+     * while, then sum up the whole run
+     *
+     * @param seconds how long to run
+     */
+    public void run(int seconds){
+        long start = System.nanoTime();
+        nextSlot.set(start);
+        go.countDown();
+        long end = start + seconds * 1_000_000_000L;
+        long lastMoves = 0, last = start;
+        while(System.nanoTime() < end){
+            LockSupport.parkNanos(REPORT_INTERVAL * 1_000_000);
+            long now = System.nanoTime();
+            long total = moves.sum();
+            LatencyHistogram done =
+                    interval.getAndSet(new LatencyHistogram());
+            System.out.printf("%5.1fs %8.0f moves/s %s\n", (now - start) / 1e9,
+                    (total - lastMoves) * 1e9 / (now - last), done.summary());
+            lastMoves = total;
+            last = now;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("total: %d moves in %.1fs, %.0f moves/s, " +
+                        "%d games, %d resyncs\n", moves.sum(), elapsed,
+                moves.sum() / elapsed, games.sum(), resyncs.sum());
+        System.out.println("latency: " + latencies.summary());
+    }
+
+    /**
+     * Take the next slot in the schedule and wait for it
+     *
+     * @return the time the move was due, in System.nanoTime
+     */
+    private long awaitSlot(){
+        try {
+            go.await();
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+        }
+        if(spacing == 0)
+            return System.nanoTime();
+        long slot = nextSlot.getAndAdd(spacing);
+        long wait;
+        while((wait = slot - System.nanoTime()) > 0)
+            LockSupport.parkNanos(wait);
+        return slot;
+    }
+
+    /**
+     * Record that a move was answered
+     *
+     * @param due when the move was due
+     */
+    private void answered(long due){
+        long latency = System.nanoTime() - due;
+        latencies.record(latency);
+        interval.get().record(latency);
+        moves.increment();
+    }
+
+    /**
+     * A player that keeps its own copy of the board and makes a random
+     * legal move whenever it is its turn
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Player implements ModelListener {
+
+        /** The server */
+        private final ViewListener proxy;
+
+        /** This player's copy of the board */
+        private int[] piles = new int[0];
+
+        /** When the move waiting for an answer was due, or 0 */
+        private long due;
+
+        /**
+         * Create a player
+         *
+         * @param proxy the server
+         */
+        Player(ViewListener proxy){
+            this.proxy = proxy;
+        }
+
+        /**
+         * Record the answer to this player's move, if it is waiting for
+         * one
+         */
+        private void answered(){
+            if(due != 0){
+                NimLoad.this.answered(due);
+                due = 0;
+            }
+        }
+
+        /**
+         * Report a player quit
+         */
+        @Override
+        public void quit() {
+            due = 0;
+        }
+
+        /**
+         * Report a player made a move
+         *
+         * @param piles the new piles formed from the move
+         */
+        @Override
+        public void moveMade(PileView piles) {
+            this.piles = piles.toArray();
+            answered();
+        }
+
+        /**
+         * Report a player made a move, applying it to our own copy of
+         * the board when only the move was sent
+         *
+         * @param pile the pile number (zero indexed)
+         * @param start the start amount taken
+         * @param amount the amount taken from the start index
+         * @param checksum the checksum of the board after the move
+         * @param piles the new piles formed from the move, or null
+         */
+        @Override
+        public void moveApplied(int pile, int start, int amount,
+                                int checksum, PileView piles) {
+            if(piles != null) {
+                moveMade(piles);
+                return;
+            }
+            answered();
+            if(!Piles.fits(this.piles, pile, start, amount)) {
+                resyncs.increment();
+                proxy.resync(this);
+                return;
+            }
+            this.piles = Piles.apply(this.piles, pile, start, amount);
+            if(Piles.checksum(this.piles) != checksum) {
+                resyncs.increment();
+                proxy.resync(this);
+            }
+        }
+
+        /**
+         * Report that a player is waiting for other player
+         */
+        @Override
+        public void waitingForOtherPlayer() {}
+
+        /**
+         * Wait for a slot and make a random move
+         */
+        @Override
+        public void myTurn() {
+            if(piles.length == 0)
+                return;
+            long slot = awaitSlot();
+            int[] move = BotPlayer.chooseMove(BotPlayer.Strength.RANDOM,
+                    null, piles, ThreadLocalRandom.current());
+            due = slot;
+            proxy.moveRequest(move[0], move[1], move[2]);
+        }
+
+        /**
+         * Report that it's another players turn to play
+         *
+         * @param player the player who's turn it is
+         */
+        @Override
+        public void otherTurn(String player) {}
+
+        /**
+         * The game was won by this player, who starts the next one
+         */
+        @Override
+        public void youWon() {
+            answered();
+            games.increment();
+            piles = new int[0];
+            proxy.newGame();
+        }
+
+        /**
+         * The game was won by the other player, the move that ended it
+         * has been answered
+         *
+         * @param player the winning player
+         */
+        @Override
+        public void otherWin(String player) {
+            answered();
+            piles = new int[0];
+        }
+
+        /**
+         * Report that a new game has been started
+         *
+         * @param piles the list of piles and amounts
+         */
+        @Override
+        public void newGame(PileView piles) {
+            this.piles = piles.toArray();
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * @filename NimMetrics.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Counters for what the server is doing
+ */
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts connections, games, messages, refused moves, and how long
+ * moves and flushes take. Every counter is a LongAdder, striped across
+ * the threads that update it, so counting on the hot path costs about
+ * as much as an uncontended increment. The times go into
+ * LatencyHistograms.
+ *
+ * The counters can be read over JMX as nim:type=NimMetrics, and as
+ * plain text, one metric per line in the Prometheus text format, from
+ * an HTTP endpoint on the loopback address.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class NimMetrics implements NimMetricsMBean {
+
+    /** Counters per opcode, opcodes are ASCII */
+    private static final int OPCODES = 128;
+
+    /** The JMX name */
+    private static final String OBJECT_NAME = "nim:type=NimMetrics";
+
+    /** The path the endpoint serves */
+    private static final String PATH = "/metrics";
+
+    /** Connections opened */
+    private static final LongAdder opened = new LongAdder();
+
+    /** Connections closed */
+    private static final LongAdder closed = new LongAdder();
+
+    /** Games started */
+    private static final LongAdder started = new LongAdder();
+
+    /** Games ended */
+    private static final LongAdder finished = new LongAdder();
+
+    /** Moves refused */
+    private static final LongAdder invalid = new LongAdder();
+
+    /** Times a full outbound queue applied its slow consumer policy */
+    private static final LongAdder slow = new LongAdder();
+
+    /** Connections closed because nothing could be written to them */
+    private static final LongAdder timeouts = new LongAdder();
+
+    /** Hint requests answered as too busy, too many were waiting */
+    private static final LongAdder hintsDropped = new LongAdder();
+
+    /** Messages read, by opcode */
+    private static final LongAdder[] in = adders();
+
+    /** Messages written, by opcode */
+    private static final LongAdder[] out = adders();
+
+    /** Nanoseconds move requests hold the game's lock */
+    private static final LatencyHistogram moveRequests =
+            new LatencyHistogram();
+
+    /** Nanoseconds flushed frames take to write to their sockets */
+    private static final LatencyHistogram flushes = new LatencyHistogram();
+
+    /** Nanoseconds bots take to pick a move */
+    private static final LatencyHistogram botDecisions =
+            new LatencyHistogram();
+
+    /** The one instance, for JMX */
+    private static final NimMetrics INSTANCE = new NimMetrics();
+
+    /**
+     * Only made once, for JMX
+     */
+    private NimMetrics(){}
+
+    /**
+     * Make a counter per opcode
+     *
+     * @return the counters
+     */
+    private static LongAdder[] adders(){
+        LongAdder[] adders = new LongAdder[OPCODES];
+        for(int i = 0; i < OPCODES; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * Record a client connecting
+     */
+    public static void connected(){
+        opened.increment();
+    }
+
+    /**
+     * Record a client connection closing
+     */
+    public static void disconnected(){
+        closed.increment();
+    }
+
+    /**
+     * Record two players being seated in a game
+     */
+    public static void gameStarted(){
+        started.increment();
+    }
+
+    /**
+     * Record a game ending
+     */
+    public static void gameFinished(){
+        finished.increment();
+    }
+
+    /**
+     * Record a move being refused
+     */
+    public static void invalidMove(){
+        invalid.increment();
+    }
+
+    /**
+     * Record a full outbound queue applying its slow consumer policy
+     */
+    public static void slowConsumer(){
+        slow.increment();
+    }
+
+    /**
+     * Record a connection closed because nothing could be written to it
+     */
+    public static void writeTimeout(){
+        timeouts.increment();
+    }
+
+    /**
+     * Record a hint request answered as too busy because too many were
+     * waiting
+     */
+    public static void hintDropped(){
+        hintsDropped.increment();
+    }
+
+    /**
+     * Record a message read from a client
+     *
+     * @param op the opcode
+     */
+    public static void received(int op){
+        in[op & (OPCODES - 1)].increment();
+    }
+
+    /**
+     * Record a message written to a client
+     *
+     * @param op the opcode
+     */
+    public static void sent(int op){
+        out[op & (OPCODES - 1)].increment();
+    }
+
+    /**
+     * Record how long a move request held the game's lock
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public static void moveRequest(long nanos){
+        moveRequests.record(nanos);
+    }
+
+    /**
+     * Record how long a write of flushed frames to a socket took, on
+     * whichever thread did the writing
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public static void flushed(long nanos){
+        flushes.record(nanos);
+    }
+
+    /**
+     * Record how long a bot took to pick a move
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public static void botDecision(long nanos){
+        botDecisions.record(nanos);
+    }
+
+    /**
+     * Make the metrics readable over JMX
+     */
+    public static void registerMBean(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException jme){
+            System.err.println("NimMetrics: not registered with JMX");
+            jme.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Serve the metrics as plain text over HTTP on the loopback address
+     *
+     * @param port the port to serve on
+     * @throws IOException if the port can't be bound
+     */
+    public static void serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, exchange -> {
+            byte[] body = text().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream stream = exchange.getResponseBody()){
+                stream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Write every metric as text, one per line
+     *
+     * @return the metrics
+     */
+    public static String text(){
+        StringBuilder text = new StringBuilder();
+        line(text, "nim_connections_active", "", opened.sum() - closed.sum());
+        line(text, "nim_connections_total", "", opened.sum());
+        line(text, "nim_games_active", "", started.sum() - finished.sum());
+        line(text, "nim_games_finished_total", "", finished.sum());
+        line(text, "nim_invalid_moves_total", "", invalid.sum());
+        line(text, "nim_slow_consumer_total", "", slow.sum());
+        line(text, "nim_write_timeouts_total", "", timeouts.sum());
+        line(text, "nim_hints_dropped_total", "", hintsDropped.sum());
+        opcodes(text, "nim_messages_in_total", in);
+        opcodes(text, "nim_messages_out_total", out);
+        histogram(text, "nim_move_request_nanos", moveRequests);
+        histogram(text, "nim_flush_nanos", flushes);
+        histogram(text, "nim_bot_decision_nanos", botDecisions);
+        return text.toString();
+    }
+
+    /**
+     * Write one metric
+     *
+     * @param text where to write
+     * @param name the metric name
+     * @param labels the labels in braces, or ""
+     * @param value the value
+     */
+    private static void line(StringBuilder text, String name, String labels,
+                             long value){
+        text.append(name).append(labels).append(' ').append(value)
+                .append('\n');
+    }
+
+    /**
+     * Write a counter per opcode that has been seen
+     *
+     * @param text where to write
+     * @param name the metric name
+     * @param adders the counters
+     */
+    private static void opcodes(StringBuilder text, String name,
+                                LongAdder[] adders){
+        for(int op = 0; op < OPCODES; op++){
+            long count = adders[op].sum();
+            if(count != 0)
+                line(text, name, "{opcode=\"" + (char) op + "\"}", count);
+        }
+    }
+
+    /**
+     * Write the count, sum and percentiles of a histogram
+     *
+     * @param text where to write
+     * @param name the metric name
+     * @param histogram the histogram
+     */
+    private static void histogram(StringBuilder text, String name,
+                                  LatencyHistogram histogram){
+        for(String q : new String[]{"0.5", "0.99", "0.999"})
+            line(text, name, "{quantile=\"" + q + "\"}",
+                    histogram.percentile(Double.parseDouble(q) * 100));
+        line(text, name + "_max", "", histogram.max());
+        line(text, name + "_count", "", histogram.count());
+    }
+
+    /**
+     * Add up a counter per opcode
+     *
+     * @param adders the counters
+     * @return the total
+     */
+    private static long total(LongAdder[] adders){
+        long total = 0;
+        for(LongAdder adder : adders)
+            total += adder.sum();
+        return total;
+    }
+
+    /**
+     * Get the number of open client connections
+     *
+     * @return the number of connections
+     */
+    @Override
+    public long getActiveConnections(){
+        return opened.sum() - closed.sum();
+    }
+
+    /**
+     * Get the number of games with two players seated that haven't
+     * ended yet
+     *
+     * @return the number of games
+     */
+    @Override
+    public long getActiveGames(){
+        return started.sum() - finished.sum();
+    }
+
+    /**
+     * Get the number of games that have ended
+     *
+     * @return the number of games
+     */
+    @Override
+    public long getFinishedGames(){
+        return finished.sum();
+    }
+
+    /**
+     * Get the number of messages read from clients
+     *
+     * @return the number of messages
+     */
+    @Override
+    public long getMessagesIn(){
+        return total(in);
+    }
+
+    /**
+     * Get the number of messages written to clients
+     *
+     * @return the number of messages
+     */
+    @Override
+    public long getMessagesOut(){
+        return total(out);
+    }
+
+    /**
+     * Get the number of moves that were refused
+     *
+     * @return the number of moves
+     */
+    @Override
+    public long getInvalidMoves(){
+        return invalid.sum();
+    }
+
+    /**
+     * Get the number of times a full outbound queue applied its slow
+     * consumer policy
+     *
+     * @return the number of times
+     */
+    @Override
+    public long getSlowConsumers(){
+        return slow.sum();
+    }
+
+    /**
+     * Get the number of connections closed because nothing could be
+     * written to them
+     *
+     * @return the number of connections
+     */
+    @Override
+    public long getWriteTimeouts(){
+        return timeouts.sum();
+    }
+
+    /**
+     * Get the number of hint requests answered as too busy because too
+     * many were waiting
+     *
+     * @return the number of requests
+     */
+    @Override
+    public long getHintsDropped(){
+        return hintsDropped.sum();
+    }
+
+    /**
+     * Get the number of move requests handled
+     *
+     * @return the number of requests
+     */
+    @Override
+    public long getMoveRequests(){
+        return moveRequests.count();
+    }
+
+    /**
+     * Get the 99th percentile of the time a move request holds the
+     * game's lock
+     *
+     * @return the time in nanoseconds
+     */
+    @Override
+    public long getMoveRequestP99Nanos(){
+        return moveRequests.percentile(99);
+    }
+
+    /**
+     * Get the 99th percentile of the time a flush takes to write
+     *
+     * @return the time in nanoseconds
+     */
+    @Override
+    public long getFlushP99Nanos(){
+        return flushes.percentile(99);
+    }
+
+    /**
+     * Get the 99th percentile of the time a bot takes to pick a move
+     *
+     * @return the time in nanoseconds
+     */
+    @Override
+    public long getBotDecisionP99Nanos(){
+        return botDecisions.percentile(99);
+    }
+
+    /**
+     * Get every metric, in the form the scrape endpoint serves
+     *
+     * @return the metrics, one per line
+     */
+    @Override
+    public String getText(){
+        return text();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * @filename NimMetricsMBean.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * The JMX view of the server's metrics
+ */
+
+/**
+ * What NimMetrics shows over JMX. Times are in nanoseconds.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public interface NimMetricsMBean {
+
+    /**
+     * Get the number of open client connections
+     *
+     * @return the number of connections
+     */
+    long getActiveConnections();
+
+    /**
+     * Get the number of games with two players seated that haven't
+     * ended yet
+     *
+     * @return the number of games
+     */
+    long getActiveGames();
+
+    /**
+     * Get the number of games that have ended
+     *
+     * @return the number of games
+     */
+    long getFinishedGames();
+
+    /**
+     * Get the number of messages read from clients
+     *
+     * @return the number of messages
+     */
+    long getMessagesIn();
+
+    /**
+     * Get the number of messages written to clients
+     *
+     * @return the number of messages
+     */
+    long getMessagesOut();
+
+    /**
+     * Get the number of moves that were refused
+     *
+     * @return the number of moves
+     */
+    long getInvalidMoves();
+
+    /**
+     * Get the number of times a full outbound queue applied its slow
+     * consumer policy
+     *
+     * @return the number of times
+     */
+    long getSlowConsumers();
+
+    /**
+     * Get the number of connections closed because nothing could be
+     * written to them
+     *
+     * @return the number of connections
+     */
+    long getWriteTimeouts();
+
+    /**
+     * Get the number of hint requests answered as too busy because too
+     * many were waiting
+     *
+     * @return the number of requests
+     */
+    long getHintsDropped();
+
+    /**
+     * Get the number of move requests handled
+     *
+     * @return the number of requests
+     */
+    long getMoveRequests();
+
+    /**
+     * Get the 99th percentile of the time a move request holds the
+     * game's lock
+     *
+     * @return the time in nanoseconds
+     */
+    long getMoveRequestP99Nanos();
+
+    /**
+     * Get the 99th percentile of the time a flush takes to write
+     *
+     * @return the time in nanoseconds
+     */
+    long getFlushP99Nanos();
+
+    /**
+     * Get the 99th percentile of the time a bot takes to pick a move
+     *
+     * @return the time in nanoseconds
+     */
+    long getBotDecisionP99Nanos();
+
+    /**
+     * Get every metric, in the form the scrape endpoint serves
+     *
+     * @return the metrics, one per line
+     */
+    String getText();
+}
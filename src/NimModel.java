@@ -6,6 +6,11 @@
  * This file contains a Java implementation to The Game of Nim
  */
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
 /**
  * This class contains the rules, and state for the Game Of Nim.
  * A reference to an instance to this class will be kept on the server
@@ -19,8 +24,8 @@ public class NimModel implements ViewListener {
     /** the original list of piles of sticks */
     private final int[] originalPiles;
 
-    /** The list that will be used in game */
-    private int[] currentPiles;
+    /** The list that will be used in game, changed in place by moves */
+    private PileArray currentPiles;
 
     /** player1's name */
     private String player1;
@@ -37,85 +42,217 @@ public class NimModel implements ViewListener {
     /** The current players turn */
     private ModelListener currentPlayer;
 
+    /** The token player1 can take their seat back with, or 0 */
+    private long token1;
+
+    /** The token player2 can take their seat back with, or 0 */
+    private long token2;
+
     /** Check if game is finished */
     private boolean finished;
 
-    /** If there should be verbose output */
-    boolean verbose;
+    /** Where game events are logged, or null */
+    private final GameLog log;
 
-    /** The message that prints whose turn it is */
-    private static final String VERBOSE_TURN = "%s vs. %s whose turn: %s\n";
+    /** Where game changes are journaled, or null */
+    private final MoveJournal journal;
+
+    /**
+     * Numbers games, from the clock in microseconds so that games of a
+     * restarted server don't reuse the numbers of journaled ones
+     */
+    private static final AtomicLong ids = new AtomicLong(
+            System.currentTimeMillis() * 1000);
 
-    /** Message for starting a game */
-    private static final String VERBOSE_START = "%s vs. %s  start game\n";
+    /** This game's number */
+    private final long id;
 
-    /** Message for a new start */
-    private static final String VERBOSE_STATE = "%s vs. %s new state: %s\n";
+    /** Position of this game's last journal record, or 0 */
+    private long journaled;
 
-    /** Message for ending a game */
-    private static final String VERBOSE_END = "%s vs. %s  ending game\n";
+    /** Works out hints away from this game's lock, or null for none */
+    private HintService hints;
 
-    /** Message for restarting game */
-    private static final String VERBOSE_RES = "%s vs. %s  restarting game\n";
+    /**
+     * Guards the game state. A lock rather than synchronized methods
+     * so that players on virtual threads don't pin their carrier while
+     * the model writes to the other player's socket
+     */
+    private final ReentrantLock lock = new ReentrantLock();
 
     /**
      * Create a new Nim Model
      *
-     * @param piles the list of piles
-     * @param verbose print messages if specified
+     * @param piles the list of piles, never changed
+     * @param log where to log game events, or null for no log
      */
-    public NimModel(int[] piles, boolean verbose){
+    public NimModel(int[] piles, GameLog log){
+        this(piles, log, null);
+    }
+
+    /**
+     * Create a new Nim Model that journals its changes
+     *
+     * @param piles the list of piles, never changed
+     * @param log where to log game events, or null for no log
+     * @param journal where to journal game changes, or null for none
+     */
+    public NimModel(int[] piles, GameLog log, MoveJournal journal){
+        this.id = ids.incrementAndGet();
         this.originalPiles = piles;
         this.finished = false;
-        this.verbose = verbose;
+        this.log = log;
+        this.journal = journal;
+    }
+
+    /**
+     * Rebuild a game from a snapshot of it, with both players away until
+     * they resume their seats
+     *
+     * @param snapshot the state of the game
+     * @param log where to log game events, or null for no log
+     * @param journal where to journal game changes, or null for none
+     */
+    public NimModel(Snapshot snapshot, GameLog log, MoveJournal journal){
+        this.id = snapshot.id;
+        ids.accumulateAndGet(snapshot.id, Math::max);
+        this.originalPiles = snapshot.originalPiles;
+        this.currentPiles = new PileArray(snapshot.piles);
+        this.player1 = snapshot.player1;
+        this.player2 = snapshot.player2;
+        this.token1 = snapshot.token1;
+        this.token2 = snapshot.token2;
+        this.player1View = new Away();
+        this.player2View = new Away();
+        this.currentPlayer = snapshot.turn == 1 ? player1View : player2View;
+        this.journaled = snapshot.position;
+        this.finished = false;
+        this.log = log;
+        this.journal = journal;
+    }
+
+    /**
+     * Get this game's number, unique across restarts of the server
+     *
+     * @return the number
+     */
+    public long getId(){
+        return id;
+    }
+
+    /**
+     * Copy the state of the game, for recovering it after a restart
+     *
+     * @return the state, or null if the game hasn't started or is over
+     */
+    public Snapshot snapshot(){
+        lock.lock();
+        try {
+            if(finished || player2 == null || currentPiles == null)
+                return null;
+            return new Snapshot(id, player1, player2, token1, token2,
+                    originalPiles, currentPiles.toArray(),
+                    currentPlayerNumber(), journaled);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Initiate a new game
      */
     private void makeNewGame(){
-        currentPiles = originalPiles.clone();
+        if(currentPiles == null)
+            currentPiles = new PileArray(originalPiles);
+        else
+            currentPiles.reset(originalPiles);
         player1View.newGame(currentPiles);
         player2View.newGame(currentPiles);
         currentPlayer = player1View;
         player1View.myTurn();
         player2View.otherTurn(player1);
 
-        // verbose logging
-        if(verbose) {
-            printPiles(currentPiles);
-            System.out.printf(VERBOSE_START, player1, player2);
+        if(log != null)
+            log.board(id, originalPiles);
+    }
+
+    /**
+     * Report that a player has joined a game
+     *
+     * @param view the view that we are talking to
+     * @param name the name of the player
+     */
+    @Override
+    public void join(ModelListener view, String name) {
+        lock.lock();
+        try {
+            if(player1 == null){
+                player1 = name;
+                player1View = view;
+                view.waitingForOtherPlayer();
+                view.flush();
+            } else {
+                player2 = name;
+                player2View = view;
+                NimMetrics.gameStarted();
+                if(log != null)
+                    log.start(id, player1, player2);
+                if(journal != null)
+                    journaled = journal.start(id, player1, player2, 0, 0,
+                            originalPiles);
+                makeNewGame();
+                flushPlayers();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Print the piles nicely
+     * Seat two players who have already been told to wait, and start
+     * their game
      *
-     * @param p the list of piles
+     * @param view1 the view of player1
+     * @param name1 the name of player1
+     * @param view2 the view of player2
+     * @param name2 the name of player2
      */
-    private void printPiles(int[] p){
-        System.out.print("piles: ");
-        for(int i : p)
-            System.out.printf("%d ", i);
-        System.out.println();
+    public void start(ModelListener view1, String name1,
+                      ModelListener view2, String name2){
+        start(view1, name1, 0, view2, name2, 0);
     }
 
     /**
-     * Report that a player has joined a game
+     * Seat two players who have already been told to wait, each with a
+     * token they can take their seat back with, and start their game
      *
-     * @param view the view that we are talking to
-     * @param name the name of the player
+     * @param view1 the view of player1
+     * @param name1 the name of player1
+     * @param token1 player1's token, or 0 if they can't resume
+     * @param view2 the view of player2
+     * @param name2 the name of player2
+     * @param token2 player2's token, or 0 if they can't resume
      */
-    @Override
-    public synchronized void join(ModelListener view, String name) {
-        if(player1 == null){
-            player1 = name;
-            player1View = view;
-            view.waitingForOtherPlayer();
-        } else {
-            player2 = name;
-            player2View = view;
+    public void start(ModelListener view1, String name1, long token1,
+                      ModelListener view2, String name2, long token2){
+        lock.lock();
+        try {
+            player1 = name1;
+            player1View = view1;
+            this.token1 = token1;
+            player2 = name2;
+            player2View = view2;
+            this.token2 = token2;
+            NimMetrics.gameStarted();
+            if(log != null)
+                log.start(id, player1, player2);
+            if(journal != null)
+                journaled = journal.start(id, player1, player2, token1,
+                        token2, originalPiles);
             makeNewGame();
+            flushPlayers();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -124,8 +261,13 @@ public class NimModel implements ViewListener {
      *
      * @return true if game is complete, false if not
      */
-    public synchronized boolean isFinished(){
-        return finished;
+    public boolean isFinished(){
+        lock.lock();
+        try {
+            return finished;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -137,61 +279,73 @@ public class NimModel implements ViewListener {
      * @param amount the amount to take from the start index
      */
     @Override
-    public synchronized void moveRequest(int pile, int start, int amount) {
-        // check that start and end boundaries were handled properly
-        if(pile < 0 || currentPiles.length <= pile ) {
-            redoMove();
-        }
+    public void moveRequest(int pile, int start, int amount) {
+        lock.lock();
+        long locked = System.nanoTime();
+        try {
+            // a request that beats the start of the game has no turn
+            if(currentPiles == null)
+                return;
 
-        // Check that bounds are correct and at least one
-        // pin is being taken
-        else if( currentPiles[pile] < start + amount  ){
-            redoMove();
-        }
+            // check that start and end boundaries were handled properly
+            if(pile < 0 || currentPiles.size() <= pile ) {
+                redoMove(pile, start, amount);
+            }
 
-        // check and see if whole piles is taken
-        else if((amount-start) == currentPiles[pile]){
-            removePile(pile);
-            if( checkWin() )
-                return;
-            alertPlayers();
-            switchTurns();
-        }
+            // Check that bounds are correct and at least one
+            // pin is being taken
+            else if( currentPiles.get(pile) < start + amount  ){
+                redoMove(pile, start, amount);
+            }
 
-        // check to see if it is not a split move
-        else if(start == 0  || start + amount == currentPiles[pile]){
-            currentPiles[pile] -= (amount);
-            alertPlayers();
-            switchTurns();
-        }
+            // check and see if whole piles is taken
+            else if((amount-start) == currentPiles.get(pile)){
+                currentPiles.remove(pile);
+                if( checkWin(pile, start, amount) )
+                    return;
+                alertPlayers(pile, start, amount);
+                switchTurns();
+            }
 
-        // must be a split move
-        else {
-            int[] newPiles = new int[currentPiles.length + 1];
-            int secondPile = currentPiles[pile] - start - amount;
-            for (int i = 0, j = 0; i < currentPiles.length; i++) {
-                if (i == pile) {
-                    newPiles[j] = start;
-                    j++;
-                    newPiles[j] = secondPile;
-                } else {
-                    newPiles[j] = currentPiles[i];
-                }
-                j++;
+            // check to see if it is not a split move
+            else if(start == 0  || start + amount == currentPiles.get(pile)){
+                currentPiles.take(pile, amount);
+                alertPlayers(pile, start, amount);
+                switchTurns();
             }
-            currentPiles = newPiles;
-            alertPlayers();
-            switchTurns();
+
+            // must be a split move
+            else {
+                currentPiles.split(pile, start, amount);
+                alertPlayers(pile, start, amount);
+                switchTurns();
+            }
+        } finally {
+            flushPlayers();
+            NimMetrics.moveRequest(System.nanoTime() - locked);
+            lock.unlock();
         }
     }
 
     /**
      * Check if all the piles have been taken
      *
+     * @param pile the pile number the move was made on
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
      * @return true if all piles are gone, false if not
      */
-    private boolean checkWin(){
-        if(currentPiles.length == 0){
+    private boolean checkWin(int pile, int start, int amount){
+        if(currentPiles.size() == 0){
+            WireStats.moved();
+            if(journal != null)
+                journaled = journal.move(id, pile, start, amount);
+            if(log != null){
+                int mover = currentPlayerNumber();
+                log.move(id, mover, pile, start, amount,
+                        currentPiles.checksum());
+                log.win(id, 3 - mover);
+            }
             if(currentPlayer.equals(player1View)){
                 player1View.otherWin(player2);
                 player2View.youWon();
@@ -207,19 +361,32 @@ public class NimModel implements ViewListener {
     /**
      * Notify players that board was updated and switch turns
      * around
+     *
+     * @param pile the pile number the move was made on
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
      */
-    private void alertPlayers(){
+    private void alertPlayers(int pile, int start, int amount){
+        WireStats.moved();
+        if(journal != null)
+            journaled = journal.move(id, pile, start, amount);
+
         // notify a move was made
-        player1View.moveMade(currentPiles);
-        player2View.moveMade(currentPiles);
-
-        // verbose logging
-        if(verbose){
-            StringBuilder strPiles = new StringBuilder();
-            for(int i : currentPiles)
-                strPiles.append(i).append(" ");
-            System.out.printf(VERBOSE_STATE, player1, player2, strPiles.toString());
-        }
+        int checksum = currentPiles.checksum();
+        player1View.moveApplied(pile, start, amount, checksum, currentPiles);
+        player2View.moveApplied(pile, start, amount, checksum, currentPiles);
+
+        if(log != null)
+            log.move(id, currentPlayerNumber(), pile, start, amount, checksum);
+    }
+
+    /**
+     * Get which seat has the turn
+     *
+     * @return 1 for player1, 2 for player2
+     */
+    private int currentPlayerNumber(){
+        return currentPlayer == player1View ? 1 : 2;
     }
 
     /**
@@ -227,44 +394,40 @@ public class NimModel implements ViewListener {
      */
     private void switchTurns(){
         // update turn accordingly
-        String p;
         if(currentPlayer.equals(player1View)) {
-            p = player1;
             currentPlayer = player2View;
             player1View.otherTurn(player2);
             player2View.myTurn();
         } else {
-            p = player2;
             currentPlayer = player1View;
             player1View.myTurn();
             player2View.otherTurn(player1);
         }
-
-        if(verbose)
-            System.out.printf(VERBOSE_TURN, player1, player2, p);
     }
 
     /**
-     * Removes a pile from the current piles
-     *
-     * @param pile the index of the pile to remove
+     * Send everything held back for the players during this change
+     * of state
      */
-    private void removePile(int pile){
-        int[] newPiles = new int[currentPiles.length-1];
-        for(int i = 0, j = 0; i < currentPiles.length; i++){
-            if(i==pile)
-                continue;
-            newPiles[j] = currentPiles[i];
-            j++;
-        }
-        currentPiles = newPiles;
+    private void flushPlayers(){
+        if(player1View != null)
+            player1View.flush();
+        if(player2View != null)
+            player2View.flush();
     }
 
     /**
      * Prompts the player to redo their move if it
      * was invalid
+     *
+     * @param pile the pile number asked for
+     * @param start the start amount asked for
+     * @param amount the amount asked for
      */
-    private void redoMove(){
+    private void redoMove(int pile, int start, int amount){
+        NimMetrics.invalidMove();
+        if(log != null)
+            log.invalid(id, currentPlayerNumber(), pile, start, amount);
         if (currentPlayer.equals(player1View))
             player1View.myTurn();
         else
@@ -275,31 +438,347 @@ public class NimModel implements ViewListener {
      * Restart the game, to the original one
      */
     @Override
-    public synchronized void newGame() {
-        // Remake board
-        if (originalPiles.length - 1 >= 0)
-            System.arraycopy(originalPiles, 1, currentPiles, 1, originalPiles.length - 1);
+    public void newGame() {
+        lock.lock();
+        try {
+            // nothing to restart until the game has started
+            if(currentPiles == null)
+                return;
+
+            // make new game, the board is remade in place
+            if(log != null)
+                log.restart(id);
+            if(journal != null)
+                journaled = journal.newGame(id);
+            makeNewGame();
+        } finally {
+            flushPlayers();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set what works out hints for the players, before the game starts
+     *
+     * @param hints the hint service, or null to answer every request for
+     *              a hint with no move
+     */
+    public void setHints(HintService hints){
+        this.hints = hints;
+    }
+
+    /**
+     * Ask for the winning move of the board. Only a copy of the board is
+     * taken while holding the lock, the move is worked out by the hint
+     * service, so a hint never holds up a move. Requests from anyone not
+     * playing, or when there is no game going, are ignored.
+     *
+     * @param view the view that wants the hint
+     */
+    @Override
+    public void hint(ModelListener view) {
+        hint(view, Runnable::run);
+    }
+
+    /**
+     * Ask for the winning move of the board, sending the answer from
+     * wherever the game's requests run
+     *
+     * @param view the view that wants the hint
+     * @param replies runs the answer, the game's actor or the hint
+     *                service's own thread
+     */
+    public void hint(ModelListener view, Executor replies) {
+        int[] board;
+        long key;
+        lock.lock();
+        try {
+            if(finished || currentPiles == null
+                    || currentPiles.size() == 0
+                    || (view != player1View && view != player2View))
+                return;
+            if(hints == null){
+                view.noHint();
+                view.flush();
+                return;
+            }
+            board = currentPiles.toArray();
+            key = currentPiles.key();
+        } finally {
+            lock.unlock();
+        }
+        hints.answer(board, key,
+                move -> replies.execute(
+                        () -> answerHint(view, key, v -> v.hint(move))),
+                () -> replies.execute(
+                        () -> answerHint(view, key, ModelListener::noHint)));
+    }
+
+    /**
+     * Send a player the hint it asked for, unless the board has moved on
+     * since, or the player has left, in which case the hint is no use
+     *
+     * @param view the view that wanted the hint
+     * @param key the key of the board the hint is for
+     * @param answer gives the view the hint, or says there is none
+     */
+    private void answerHint(ModelListener view, long key,
+                            Consumer<ModelListener> answer){
+        lock.lock();
+        try {
+            if(finished || currentPiles == null || currentPiles.key() != key
+                    || (view != player1View && view != player2View))
+                return;
+            answer.accept(view);
+            view.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send the whole board to a player whose copy has drifted
+     *
+     * @param view the view that wants the board
+     */
+    @Override
+    public void resync(ModelListener view) {
+        lock.lock();
+        try {
+            if(currentPiles != null)
+                view.moveMade(currentPiles);
+        } finally {
+            view.flush();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hold a player's seat while their connection is down, so that they
+     * can resume it
+     *
+     * @param view the view whose connection dropped
+     */
+    @Override
+    public void dropped(ModelListener view) {
+        lock.lock();
+        try {
+            if(view == player1View)
+                reseat(1, new Away());
+            else if(view == player2View)
+                reseat(2, new Away());
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // make new game
-        makeNewGame();
+    /**
+     * Give a player whose connection dropped their seat back, and send
+     * them the whole state of the game
+     *
+     * @param view the view taking the seat
+     * @param token the token the seat was given
+     */
+    @Override
+    public void resume(ModelListener view, long token) {
+        lock.lock();
+        try {
+            int seat = token == 0 ? 0 : token == token1 ? 1
+                    : token == token2 ? 2 : 0;
+            if(finished || seat == 0){
+                view.quit();
+                return;
+            }
+            reseat(seat, view);
+            view.session(token);
+            String other = seat == 1 ? player2 : player1;
+            if(currentPiles.size() > 0){
+                view.moveMade(currentPiles);
+                if(currentPlayer == view)
+                    view.myTurn();
+                else
+                    view.otherTurn(other);
+            } else if(currentPlayer == view){
+                // the last move was theirs, so they lost
+                view.otherWin(other);
+            } else {
+                view.youWon();
+            }
+        } finally {
+            view.flush();
+            lock.unlock();
+        }
+    }
 
-        if(verbose)
-            System.out.printf(VERBOSE_RES, player1, player2);
+    /**
+     * Put a view in a seat, keeping the turn with the seat
+     *
+     * @param seat 1 for player1, 2 for player2
+     * @param view the view to seat
+     */
+    private void reseat(int seat, ModelListener view){
+        ModelListener old = seat == 1 ? player1View : player2View;
+        if(currentPlayer == old)
+            currentPlayer = view;
+        if(seat == 1)
+            player1View = view;
+        else
+            player2View = view;
     }
 
     /**
      * Cause server to end the game
      */
     @Override
-    public synchronized void quit() {
-        if(player1View != null)
-            player1View.quit();
-        if(player2View != null)
-            player2View.quit();
-        currentPlayer = null;
-        finished = true;
+    public void quit() {
+        lock.lock();
+        try {
+            if(player1View != null)
+                player1View.quit();
+            if(player2View != null)
+                player2View.quit();
+            currentPlayer = null;
+            boolean ending = !finished && player2View != null;
+            if(ending)
+                NimMetrics.gameFinished();
+            finished = true;
+
+            if(log != null)
+                log.end(id);
+            if(journal != null && ending)
+                journaled = journal.quit(id);
+        } finally {
+            flushPlayers();
+            lock.unlock();
+        }
+    }
 
-        if(verbose)
-            System.out.printf(VERBOSE_END, player1, player2);
+    /**
+     * The state of a game at one point in its journal
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    public static class Snapshot {
+
+        /** The game's number */
+        final long id;
+
+        /** player1's name */
+        final String player1;
+
+        /** player2's name */
+        final String player2;
+
+        /** The token player1 can take their seat back with, or 0 */
+        final long token1;
+
+        /** The token player2 can take their seat back with, or 0 */
+        final long token2;
+
+        /** The piles every round starts from */
+        final int[] originalPiles;
+
+        /** The piles now */
+        final int[] piles;
+
+        /** Whose turn it is, 1 or 2 */
+        final int turn;
+
+        /** Position of the game's last journal record in the snapshot */
+        final long position;
+
+        /**
+         * Gather the state of a game
+         *
+         * @param id the game's number
+         * @param player1 player1's name
+         * @param player2 player2's name
+         * @param token1 player1's token, or 0
+         * @param token2 player2's token, or 0
+         * @param originalPiles the piles every round starts from
+         * @param piles the piles now
+         * @param turn whose turn it is, 1 or 2
+         * @param position position of the game's last journal record
+         */
+        Snapshot(long id, String player1, String player2, long token1,
+                 long token2, int[] originalPiles, int[] piles, int turn,
+                 long position){
+            this.id = id;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.token1 = token1;
+            this.token2 = token2;
+            this.originalPiles = originalPiles;
+            this.piles = piles;
+            this.turn = turn;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Stands in for a player whose connection dropped, ignoring what the
+     * game tells them until they resume their seat
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Away implements ModelListener {
+
+        /**
+         * Ignore the end of the game
+         */
+        @Override
+        public void quit() {}
+
+        /**
+         * Ignore the board
+         *
+         * @param piles the piles
+         */
+        @Override
+        public void moveMade(PileView piles) {}
+
+        /**
+         * Ignore being told to wait
+         */
+        @Override
+        public void waitingForOtherPlayer() {}
+
+        /**
+         * Ignore the turn
+         */
+        @Override
+        public void myTurn() {}
+
+        /**
+         * Ignore the other player's turn
+         *
+         * @param player the other player's name
+         */
+        @Override
+        public void otherTurn(String player) {}
+
+        /**
+         * Ignore the win
+         */
+        @Override
+        public void youWon() {}
+
+        /**
+         * Ignore the loss
+         *
+         * @param player the winner's name
+         */
+        @Override
+        public void otherWin(String player) {}
+
+        /**
+         * Ignore the new board
+         *
+         * @param piles the piles
+         */
+        @Override
+        public void newGame(PileView piles) {}
     }
 }
@@ -8,8 +8,11 @@
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The server side application for Game of Nim
@@ -21,7 +24,74 @@ public class NimServer {
 
     /** The usage message for NimServer */
     private static final String USAGE = "Usage: java NimServer hostname port-number" +
-            " [true] [pile1 [pile2 ...]]";
+            " [true] [threaded|virtual|nio] [games=locked|actor]" +
+            " [slow=drop|coalesce|disconnect]" +
+            " [bot=random|greedy|perfect|mcts] [hints]" +
+            " [table=grundy-file] [cache=megabytes] [metrics=port]" +
+            " [log=directory] [journal=directory] [pile1 [pile2 ...]]";
+
+    /** Milliseconds between wire counter reports */
+    private static final long STATS_INTERVAL = 10_000;
+
+    /** Milliseconds between snapshots of the games being played */
+    private static final long SNAPSHOT_INTERVAL = 30_000;
+
+    /** Milliseconds a player waits for an opponent before getting a bot */
+    private static final long BOT_DELAY = 10_000;
+
+    /** Prefix of the game execution argument */
+    private static final String GAMES_ARG = "games=";
+
+    /** Games run on their players' threads behind a lock */
+    private static final String GAMES_LOCKED = "locked";
+
+    /** Games run as actors on a pool of one thread per core */
+    private static final String GAMES_ACTOR = "actor";
+
+    /** Prefix of the slow consumer policy argument */
+    private static final String SLOW_ARG = "slow=";
+
+    /** Prefix of the bot argument */
+    private static final String BOT_ARG = "bot=";
+
+    /** Argument that turns hints on */
+    private static final String HINTS_ARG = "hints";
+
+    /** Prefix of the Grundy table file argument */
+    private static final String TABLE_ARG = "table=";
+
+    /** Prefix of the position cache size argument */
+    private static final String CACHE_ARG = "cache=";
+
+    /** Megabytes of positions cached unless told otherwise */
+    private static final int DEFAULT_CACHE = 16;
+
+    /** Prefix of the metrics endpoint port argument */
+    private static final String METRICS_ARG = "metrics=";
+
+    /** Prefix of the game log directory argument */
+    private static final String LOG_ARG = "log=";
+
+    /** Prefix of the move journal directory argument */
+    private static final String JOURNAL_ARG = "journal=";
+
+    /** Where verbose servers log games unless told otherwise */
+    private static final String DEFAULT_LOG = "logs";
+
+    /** Number of threads accepting connections */
+    static final int ACCEPTORS = 4;
+
+    /** Accept backlog for the server socket */
+    static final int BACKLOG = 1024;
+
+    /** Thread per connection server mode */
+    private static final String MODE_THREADED = "threaded";
+
+    /** Virtual thread per connection server mode */
+    private static final String MODE_VIRTUAL = "virtual";
+
+    /** Selector driven server mode */
+    private static final String MODE_NIO = "nio";
 
     /**
      * Start the server
@@ -29,6 +99,29 @@ public class NimServer {
      * @param args the command line args as defined in usage message
      */
     public static void main(String[] args) {
+        start(args, false);
+    }
+
+    /**
+     * Start the server along with an in memory transport, so
+     * simulations and tests running in this process can play against
+     * socket players without a socket of their own
+     *
+     * @param args the command line args as defined in usage message
+     * @return the in memory transport, started
+     */
+    public static LocalTransport startWithLocal(String[] args) {
+        return start(args, true);
+    }
+
+    /**
+     * Start the server, exiting if the args are wrong or it can't bind
+     *
+     * @param args the command line args as defined in usage message
+     * @param local true to start an in memory transport as well
+     * @return the in memory transport, or null if there isn't one
+     */
+    private static LocalTransport start(String[] args, boolean local) {
         // check args are right
         if(args.length < 2 ){
             System.err.println(USAGE);
@@ -51,11 +144,117 @@ public class NimServer {
         // get verbose output argument
         boolean verbose = false;
         int start = 2;
-        try{
-            verbose = args[2].equals("true");
+        if(args.length > start &&
+                (args[start].equals("true") || args[start].equals("false"))){
+            verbose = args[start].equals("true");
+            start++;
+        }
+
+        // get server mode argument
+        String mode = MODE_THREADED;
+        if(args.length > start && isMode(args[start])){
+            mode = args[start];
+            start++;
+        }
+
+        // get game execution argument
+        boolean actors = false;
+        if(args.length > start && args[start].startsWith(GAMES_ARG)){
+            String games = args[start].substring(GAMES_ARG.length());
+            if(!games.equals(GAMES_LOCKED) && !games.equals(GAMES_ACTOR)){
+                System.err.printf("'%s' not a game execution\n", args[start]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            actors = games.equals(GAMES_ACTOR);
+            start++;
+        }
+
+        // get slow consumer policy argument
+        SlowConsumer policy = SlowConsumer.DISCONNECT;
+        if(args.length > start && args[start].startsWith(SLOW_ARG)){
+            policy = SlowConsumer.parse(
+                    args[start].substring(SLOW_ARG.length()));
+            if(policy == null){
+                System.err.printf("'%s' not a slow consumer policy\n",
+                        args[start]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            start++;
+        }
+
+        // get bot strength argument
+        BotPlayer.Strength botStrength = null;
+        if(args.length > start && args[start].startsWith(BOT_ARG)){
+            botStrength = BotPlayer.Strength.parse(
+                    args[start].substring(BOT_ARG.length()));
+            if(botStrength == null){
+                System.err.printf("'%s' not a bot strength\n", args[start]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            start++;
+        }
+
+        // get hints argument
+        boolean hints = false;
+        if(args.length > start && args[start].equals(HINTS_ARG)){
+            hints = true;
+            start++;
+        }
+
+        // get Grundy table file argument
+        Path tableFile = null;
+        if(args.length > start && args[start].startsWith(TABLE_ARG)){
+            tableFile = Path.of(args[start].substring(TABLE_ARG.length()));
+            start++;
+        }
+
+        // get position cache size argument
+        int cacheSize = DEFAULT_CACHE;
+        if(args.length > start && args[start].startsWith(CACHE_ARG)){
+            try {
+                cacheSize = Integer.parseInt(
+                        args[start].substring(CACHE_ARG.length()));
+            } catch (NumberFormatException nfe){
+                cacheSize = -1;
+            }
+            if(cacheSize < 0){
+                System.err.printf("'%s' not a cache size\n", args[start]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            start++;
+        }
+
+        // get metrics endpoint port argument
+        int metricsPort = -1;
+        if(args.length > start && args[start].startsWith(METRICS_ARG)){
+            try {
+                metricsPort = Integer.parseInt(
+                        args[start].substring(METRICS_ARG.length()));
+            } catch (NumberFormatException nfe){
+                System.err.printf("'%s' not a valid port\n", args[start]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            start++;
+        }
+
+        // get game log directory argument, verbose servers always log
+        Path logDirectory = verbose ? Path.of(DEFAULT_LOG) : null;
+        if(args.length > start && args[start].startsWith(LOG_ARG)){
+            logDirectory = Path.of(args[start].substring(LOG_ARG.length()));
+            start++;
+        }
+
+        // get move journal directory argument
+        Path journalDirectory = null;
+        if(args.length > start && args[start].startsWith(JOURNAL_ARG)){
+            journalDirectory = Path.of(
+                    args[start].substring(JOURNAL_ARG.length()));
             start++;
-        } catch (Exception ignored){
-            // squash
         }
 
         // Get piles
@@ -66,10 +265,10 @@ public class NimServer {
         } else {
 
             piles = new int[size];
-            int i = 3;
+            int i = start;
             try {
                 for (; i < args.length; i++) {
-                    piles[i - 3] = Integer.parseInt(args[i]);
+                    piles[i - start] = Integer.parseInt(args[i]);
                 }
             } catch (NumberFormatException n) {
                 System.err.printf("'%s' not a valid integer\n", args[i]);
@@ -78,29 +277,146 @@ public class NimServer {
             }
         }
 
+        // report what moves cost on the wire
+        if(verbose)
+            reportWireStats();
+
         // Create server socket and start serving games
         try{
-            // bind to socket
-            ServerSocket serverSocket = new ServerSocket();
-            serverSocket.bind(new InetSocketAddress(host, port));
-
-            // start games
-            NimModel model = null;
-            while(true){
-                // open a connection to a client
-                Socket socket = serverSocket.accept();
-                ViewProxy proxy = new ViewProxy(socket);
-                if(model == null || model.isFinished() ){
-                    model = new NimModel(piles, verbose);
-                    proxy.setListener(model);
-                } else {
-                    proxy.setListener(model);
-                    model = null;
-                }
+            NimMetrics.registerMBean();
+            if(metricsPort >= 0)
+                NimMetrics.serve(metricsPort);
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            // only perfect bots, hints and a table need a solver
+            GrundySolver solver = null;
+            if(botStrength == BotPlayer.Strength.PERFECT || hints
+                    || tableFile != null) {
+                TranspositionTable cache = cacheSize == 0 ? null
+                        : new TranspositionTable(cacheSize * (1L << 20));
+                solver = new GrundySolver(tableFile,
+                        ForkJoinPool.commonPool(), cache);
+            }
+            GameLog log = null;
+            if(logDirectory != null) {
+                log = new GameLog(logDirectory);
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(log::close, "game-log-close"));
+            }
+            MoveJournal journal = null;
+            List<NimModel.Snapshot> recovered = List.of();
+            if(journalDirectory != null) {
+                recovered = recover(journalDirectory);
+                journal = new MoveJournal(journalDirectory);
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(journal::close, "journal-close"));
+            }
+            GameActor.Pool pool = actors ? new GameActor.Pool(
+                    Runtime.getRuntime().availableProcessors()) : null;
+            Matchmaker matchmaker = new Matchmaker(piles, log, journal,
+                    botStrength, BOT_DELAY, solver,
+                    hints ? new HintService(solver) : null, pool);
+            if(journal != null) {
+                for(NimModel.Snapshot snapshot : recovered)
+                    matchmaker.adopt(new NimModel(snapshot, log, journal));
+                scheduleSnapshots(journalDirectory, journal, matchmaker);
+            }
+            Transport sockets;
+            if(mode.equals(MODE_NIO)) {
+                sockets = new NioServer(address, matchmaker,
+                        Runtime.getRuntime().availableProcessors(), policy);
+            } else if(mode.equals(MODE_VIRTUAL)) {
+                sockets = new ThreadedServer(address, matchmaker,
+                        ThreadMode.VIRTUAL, policy);
+            } else {
+                sockets = new ThreadedServer(address, matchmaker,
+                        ThreadMode.PLATFORM, policy);
+            }
+            sockets.start();
+            if(local) {
+                LocalTransport memory = new LocalTransport(matchmaker,
+                        ThreadMode.VIRTUAL);
+                memory.start();
+                return memory;
             }
         } catch (IOException ioe){
             ioError(ioe);
         }
+        return null;
+    }
+
+    /**
+     * Print the wire counters every so often
+     */
+    private static void reportWireStats(){
+        Thread reporter = new Thread(() -> {
+            while(true){
+                try {
+                    Thread.sleep(STATS_INTERVAL);
+                } catch (InterruptedException ie){
+                    return;
+                }
+                System.out.print(WireStats.summary());
+            }
+        }, "wire-stats");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * Rebuild the games that were unfinished when the server last
+     * stopped
+     *
+     * @param directory the journal directory
+     * @return the state of each game
+     * @throws IOException if the journal can't be read
+     */
+    private static List<NimModel.Snapshot> recover(Path directory)
+            throws IOException {
+        long start = System.nanoTime();
+        List<NimModel.Snapshot> recovered = GameRecovery.recover(directory,
+                ForkJoinPool.commonPool());
+        if(!recovered.isEmpty())
+            System.out.printf("NimServer: recovered %d games in %d ms\n",
+                    recovered.size(), (System.nanoTime() - start) / 1_000_000);
+        return recovered;
+    }
+
+    /**
+     * Snapshot the games now, so the games just recovered don't have to
+     * be replayed again, and then every so often
+     *
+     * @param directory the journal directory
+     * @param journal the journal the games write to
+     * @param matchmaker holds the games
+     */
+    private static void scheduleSnapshots(Path directory, MoveJournal journal,
+                                          Matchmaker matchmaker){
+        Runnable snapshot = () -> {
+            try {
+                GameRecovery.snapshot(directory, journal, matchmaker.games());
+            } catch (IOException ioe){
+                System.err.println("NimServer: snapshot failed");
+                ioe.printStackTrace(System.err);
+            }
+        };
+        snapshot.run();
+        Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }).scheduleWithFixedDelay(snapshot, SNAPSHOT_INTERVAL,
+                SNAPSHOT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check if an argument names a server mode
+     *
+     * @param arg the command line argument
+     * @return true if the argument is a server mode
+     */
+    private static boolean isMode(String arg){
+        return arg.equals(MODE_THREADED) || arg.equals(MODE_VIRTUAL) ||
+                arg.equals(MODE_NIO);
     }
 
     /**
@@ -7,6 +7,8 @@
  */
 
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * View for Nim
@@ -24,6 +26,15 @@ public class NimView implements ModelListener{
     /** Getting user input */
     private final Scanner userInput;
 
+    /**
+     * Asks the user for moves, so messages from the server, like hints,
+     * are still read while the user makes up their mind
+     */
+    private final ExecutorService prompter;
+
+    /** The protocol version the server picked */
+    private volatile int version = WireCodec.V1;
+
     /** The help message */
     private static final String HELP_MSG = """
                     Command  Example/Description
@@ -32,12 +43,21 @@ public class NimView implements ModelListener{
                     p# i# q# remove q# pins starting at index i# from pile p#
                     Commands use 0-based indexing.""";
 
+    /** The help message for hints, for servers that give them */
+    private static final String HINT_HELP =
+            "?        ask the server for a hint";
+
     /**
      * Create a view object
      * Create a view object
      */
     public NimView() {
         userInput = new Scanner(System.in);
+        prompter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "NimView-prompt");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -76,11 +96,39 @@ public class NimView implements ModelListener{
      * @param piles the new piles formed from the move
      */
     @Override
-    public void moveMade(int[] piles) {
-        this.piles = piles.clone();
+    public void moveMade(PileView piles) {
+        this.piles = piles.toArray();
         printPiles(this.piles);
     }
 
+    /**
+     * Report a player made a move, applying it to our own copy of the
+     * board when only the move was sent
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     * @param piles the new piles formed from the move, or null
+     */
+    @Override
+    public void moveApplied(int pile, int start, int amount, int checksum,
+                            PileView piles) {
+        if(piles != null) {
+            moveMade(piles);
+            return;
+        }
+        if(!Piles.fits(this.piles, pile, start, amount)) {
+            listener.resync(this);
+            return;
+        }
+        this.piles = Piles.apply(this.piles, pile, start, amount);
+        if(Piles.checksum(this.piles) != checksum)
+            listener.resync(this);
+        else
+            printPiles(this.piles);
+    }
+
     /**
      * Report that a player is waiting for other player
      */
@@ -90,13 +138,37 @@ public class NimView implements ModelListener{
     }
 
     /**
-     * Report that it's my turn to play
+     * Remember the protocol version the server picked
+     *
+     * @param version the version
+     */
+    @Override
+    public void version(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Report that it's my turn to play, and ask the user for a move
+     * away from the thread the server's messages are read on
      */
     @Override
     public void myTurn() {
+        prompter.execute(this::prompt);
+    }
+
+    /**
+     * Ask the user for a move until they make one, quit or restart
+     */
+    private void prompt() {
         int pile, start, amount;
         while(true) {
             System.out.print("Your turn > ");
+
+            // the user closed their input, so they're done playing
+            if(!userInput.hasNextLine()){
+                listener.quit();
+                break;
+            }
             String input = userInput.nextLine();
 
             // check if the user wants help
@@ -112,6 +184,12 @@ public class NimView implements ModelListener{
                 break;
             }
 
+            // see if user wants a hint, it is printed when it arrives
+            if(input.equals("?") && version >= WireCodec.V5){
+                listener.hint(this);
+                continue;
+            }
+
             // Check if user wants to restart game
             if(input.equals("n")){
                 listener.newGame();
@@ -130,7 +208,27 @@ public class NimView implements ModelListener{
                 // squash
             }
         }
-        // make move
+    }
+
+    /**
+     * Print a hint the server sent
+     *
+     * @param move the winning move, or null if every move loses
+     */
+    @Override
+    public void hint(int[] move) {
+        if(move == null)
+            System.out.println("Hint: every move loses");
+        else
+            System.out.printf("Hint: %d %d %d\n", move[0], move[1], move[2]);
+    }
+
+    /**
+     * Report that the server didn't work out a hint
+     */
+    @Override
+    public void noHint() {
+        System.out.println("Hint: the server has no hint to give");
     }
 
     /**
@@ -138,6 +236,8 @@ public class NimView implements ModelListener{
      */
     private void printHelp(){
         System.out.println(HELP_MSG);
+        if(version >= WireCodec.V5)
+            System.out.println(HINT_HELP);
     }
 
     /**
@@ -175,9 +275,8 @@ public class NimView implements ModelListener{
      * @param p the list of piles and amounts
      */
     @Override
-    public void newGame(int[] p) {
-        this.piles = new int[p.length];
-        System.arraycopy(p, 0, this.piles, 0, p.length);
+    public void newGame(PileView p) {
+        this.piles = p.toArray();
         System.out.println("new game started.");
         printPiles(piles);
     }
@@ -0,0 +1,248 @@
+/*
+ * @filename NioServer.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A selector driven server for the Game of Nim
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves games over non blocking channels. Acceptor threads hand
+ * connections to the same matchmaker the threaded server uses, and a
+ * small fixed number of event loops do all the reading and writing, so an idle
+ * connection costs a selection key and a few buffers instead of a thread.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class NioServer implements Transport {
+
+    /** The address to bind to */
+    private final InetSocketAddress address;
+
+    /** Pairs joined players into games */
+    private final Matchmaker matchmaker;
+
+    /** The event loops connections are spread over */
+    private final EventLoop[] loops;
+
+    /** What to do with clients that can't keep up */
+    private final SlowConsumer policy;
+
+    /**
+     * Create a new selector driven server
+     *
+     * @param address the address to bind to
+     * @param matchmaker pairs joined players into games
+     * @param loopCount the number of event loop threads
+     * @param policy what to do with clients that can't keep up
+     * @throws IOException if a selector can't be opened
+     */
+    public NioServer(InetSocketAddress address, Matchmaker matchmaker,
+                     int loopCount, SlowConsumer policy) throws IOException {
+        this.address = address;
+        this.matchmaker = matchmaker;
+        this.policy = policy;
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        for(int i = 0; i < loops.length; i++)
+            loops[i] = new EventLoop(i);
+    }
+
+    /**
+     * Bind to the address, start the event loops and start accepting
+     * connections
+     *
+     * @throws IOException if the channel can't be bound
+     */
+    @Override
+    public void start() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(address, NimServer.BACKLOG);
+        for(EventLoop loop : loops)
+            loop.start();
+
+        // accept on several threads, pairing through one matchmaker
+        AtomicInteger next = new AtomicInteger();
+        Runnable acceptor = () -> {
+            try {
+                while(true){
+                    SocketChannel channel = server.accept();
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    EventLoop loop = loops[Math.floorMod(
+                            next.getAndIncrement(), loops.length)];
+                    new ChannelViewProxy(channel, loop, policy)
+                            .setListener(matchmaker.seat());
+                }
+            } catch (IOException ioe){
+                System.err.println("NioServer: IO error");
+                ioe.printStackTrace(System.err);
+                System.exit(1);
+            }
+        };
+        for(int i = 0; i < NimServer.ACCEPTORS; i++)
+            new Thread(acceptor, "acceptor-" + i).start();
+    }
+
+    /**
+     * A thread that owns a selector and services every channel
+     * registered with it
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    static class EventLoop extends Thread {
+
+        /** The selector for this loop */
+        private final Selector selector;
+
+        /** Work handed to this loop from other threads */
+        private final ConcurrentLinkedQueue<Runnable> tasks =
+                new ConcurrentLinkedQueue<>();
+
+        /**
+         * Create a new event loop
+         *
+         * @param id the number of this loop
+         * @throws IOException if the selector can't be opened
+         */
+        EventLoop(int id) throws IOException {
+            super("nim-loop-" + id);
+            setDaemon(true);
+            selector = Selector.open();
+        }
+
+        /**
+         * Run a task on this loop's thread
+         *
+         * @param task the task
+         */
+        void execute(Runnable task){
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Register a channel with this loop
+         *
+         * @param proxy the proxy that owns the channel
+         */
+        void register(ChannelViewProxy proxy){
+            execute(() -> {
+                try {
+                    proxy.channel().register(selector,
+                            SelectionKey.OP_READ, proxy);
+                } catch (IOException ioe){
+                    proxy.close();
+                }
+            });
+        }
+
+        /**
+         * Ask to be told when a channel can be written to again
+         *
+         * @param proxy the proxy with pending output
+         */
+        void interestWrite(ChannelViewProxy proxy){
+            execute(() -> {
+                SelectionKey key = proxy.channel().keyFor(selector);
+                if(key != null && key.isValid())
+                    key.interestOps(SelectionKey.OP_READ |
+                            SelectionKey.OP_WRITE);
+            });
+        }
+
+        /**
+         * Stop being told a channel can be written to
+         *
+         * @param key the key of the channel
+         */
+        void clearWrite(SelectionKey key){
+            if(key.isValid())
+                key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Select and dispatch ready channels forever
+         */
+        public void run(){
+            while(true){
+                try {
+                    selector.select();
+                } catch (IOException ioe){
+                    System.err.println("NioServer: IO error");
+                    ioe.printStackTrace(System.err);
+                    return;
+                }
+
+                // a task or connection that throws mustn't stop the loop
+                Runnable task;
+                while((task = tasks.poll()) != null){
+                    try {
+                        task.run();
+                    } catch (RuntimeException re){
+                        runtimeError(re);
+                    }
+                }
+
+                Iterator<SelectionKey> keys =
+                        selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ChannelViewProxy proxy =
+                            (ChannelViewProxy) key.attachment();
+                    if(!key.isValid()){
+                        proxy.close();
+                        continue;
+                    }
+                    try {
+                        if(key.isWritable())
+                            proxy.onWritable(key);
+                        if(key.isValid() && key.isReadable())
+                            proxy.onReadable();
+                    } catch (RuntimeException re){
+                        runtimeError(re);
+                        drop(proxy);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drop a connection whose handling threw, telling its listener
+         * if that can be done
+         *
+         * @param proxy the proxy
+         */
+        private static void drop(ChannelViewProxy proxy){
+            try {
+                proxy.disconnect();
+            } catch (RuntimeException re){
+                runtimeError(re);
+                proxy.close();
+            }
+        }
+
+        /**
+         * Report an exception thrown on the loop, which carries on
+         *
+         * @param re the RuntimeException
+         */
+        private static void runtimeError(RuntimeException re){
+            System.err.println("NioServer: error on event loop");
+            re.printStackTrace(System.err);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * @filename Outbound.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * The bounded queue of frames waiting to be written to one client
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Frames a proxy has flushed that haven't been written to the client
+ * yet. The game only ever adds to the queue, and the writing is done
+ * by whoever owns the socket, so a client that stops reading never
+ * holds up the game it is in, or any other.
+ *
+ * The queue holds a limited number of frames. Once it is full the
+ * connection's SlowConsumer policy decides what happens to the next
+ * one, depending on its kind. A frame that says whose turn it is or who
+ * won always leaves a frame saying so queued, since an older client
+ * has no checksum to find out it missed one. Dropping keeps only the
+ * newest of them, and coalescing replaces them with a frame that says
+ * the same, so either way the queue stays bounded. An essential frame
+ * is always queued as it is. A final frame, the quit, is always queued
+ * and nothing is queued after it.
+ *
+ * Nobody writes the queue while it is empty. The first frame queued
+ * after that tells its proxy to start a writer, which writes until the
+ * queue is empty again and then stops.
+ *
+ * A watchdog checks every open queue once a second, and one that has
+ * had frames waiting without any of them being written for longer
+ * than the write timeout is closed and its stall handler run.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class Outbound {
+
+    /** A frame that only updates the board, or answers a hint */
+    static final int DROPPABLE = 0;
+
+    /** A frame that says whose turn it is or how the game ended */
+    static final int TURN = 1;
+
+    /** A frame that must be sent as it is */
+    static final int ESSENTIAL = 2;
+
+    /** A frame that ends the connection, nothing is sent after it */
+    static final int FINAL = 3;
+
+    /** Most frames queued before the slow consumer policy applies */
+    static final int LIMIT = 256;
+
+    /** Milliseconds frames may wait without any being written */
+    static final long WRITE_TIMEOUT = 10_000;
+
+    /** Milliseconds between checks of the watchdog */
+    private static final long WATCH_INTERVAL = 1_000;
+
+    /** Every open queue, for the watchdog */
+    private static final Set<Outbound> open = ConcurrentHashMap.newKeySet();
+
+    /** Closes queues that have stopped moving */
+    private static final ScheduledExecutorService watchdog = watchdog();
+
+    /**
+     * Guards the queue. A lock rather than synchronized methods so that
+     * writers on virtual threads don't pin their carrier
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The frames, oldest first */
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+    /** What to do when the queue is full */
+    private final SlowConsumer policy;
+
+    /** Run by the watchdog if the queue stops moving */
+    private final Runnable onStall;
+
+    /** If the oldest frame has started to be written */
+    private boolean started;
+
+    /** When a frame was last written, or the queue last became busy */
+    private long progress;
+
+    /** If the connection is gone */
+    private boolean closed;
+
+    /** If a final frame has been queued */
+    private boolean ended;
+
+    /** If a writer is working through the queue */
+    private boolean draining;
+
+    /** If the watchdog knows about this queue yet */
+    private boolean watched;
+
+    /**
+     * Create a queue, the watchdog looks after it once it has had a
+     * frame
+     *
+     * @param policy what to do when the queue is full
+     * @param onStall what to do if nothing gets written for too long
+     */
+    public Outbound(SlowConsumer policy, Runnable onStall){
+        this.policy = policy;
+        this.onStall = onStall;
+    }
+
+    /**
+     * Queue a frame, unless the queue is full and the policy says
+     * otherwise
+     *
+     * @param frame the frame, its position is where writing carries on
+     * @param kind the kind of frame, DROPPABLE, TURN, ESSENTIAL or FINAL
+     * @param latest makes a frame with the whole state of the game, for
+     *               coalescing
+     * @return false if the client should be disconnected
+     */
+    public boolean add(ByteBuffer frame, int kind,
+                       Supplier<ByteBuffer> latest){
+        lock.lock();
+        try {
+            if(closed || ended)
+                return true;
+            if(kind == FINAL)
+                ended = true;
+            if(frames.size() < LIMIT || kind >= ESSENTIAL){
+                push(frame, kind);
+                return true;
+            }
+            NimMetrics.slowConsumer();
+            switch(policy){
+                case DROP -> {
+                    if(kind == TURN) {
+                        discard();
+                        push(frame, kind);
+                    }
+                    return true;
+                }
+                case COALESCE -> {
+                    discard();
+                    push(latest.get(), TURN);
+                    return true;
+                }
+                default -> {
+                    return false;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throw away every queued frame that can be made up for later,
+     * except one that has started to be written
+     */
+    private void discard(){
+        Iterator<Frame> queued = frames.iterator();
+        if(started && queued.hasNext())
+            queued.next();
+        while(queued.hasNext())
+            if(queued.next().kind < ESSENTIAL)
+                queued.remove();
+    }
+
+    /**
+     * Put a frame on the end of the queue
+     *
+     * @param frame the frame
+     * @param kind the kind of frame
+     */
+    private void push(ByteBuffer frame, int kind){
+        if(frames.isEmpty()) {
+            progress = System.nanoTime();
+            started = frame.position() > 0;
+        }
+        if(!watched) {
+            watched = true;
+            open.add(this);
+        }
+        frames.add(new Frame(frame, kind));
+    }
+
+    /**
+     * Check if nothing is waiting to be written
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty(){
+        lock.lock();
+        try {
+            return frames.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the oldest frame to write, without taking it off the queue
+     *
+     * @return the frame, or null if there is none
+     */
+    public ByteBuffer head(){
+        lock.lock();
+        try {
+            Frame head = frames.peek();
+            if(head == null)
+                return null;
+            started = true;
+            return head.bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take on writing the queue, if it has frames and no writer
+     *
+     * @return true if the caller should start a writer
+     */
+    public boolean startDraining(){
+        lock.lock();
+        try {
+            if(draining || closed || frames.isEmpty())
+                return false;
+            draining = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the oldest frame for the writer to write, without taking it
+     * off the queue, or let the writer go once there is nothing to write
+     *
+     * @return the frame, or null when the writer should stop
+     */
+    public ByteBuffer nextToDrain(){
+        lock.lock();
+        try {
+            if(closed || frames.isEmpty()) {
+                draining = false;
+                return null;
+            }
+            return head();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Note that some of the oldest frame was written
+     */
+    public void wrote(){
+        lock.lock();
+        try {
+            progress = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest frame off the queue once it is all written
+     */
+    public void written(){
+        lock.lock();
+        try {
+            frames.poll();
+            started = false;
+            progress = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget every frame, and stop taking new ones
+     */
+    public void close(){
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            open.remove(this);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check if frames have waited too long without any being written
+     *
+     * @param now the time in nanoseconds
+     * @return true if the queue has stalled
+     */
+    private boolean stalled(long now){
+        lock.lock();
+        try {
+            return !frames.isEmpty() && now - progress >
+                    TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start the watchdog that closes stalled queues
+     *
+     * @return the watchdog
+     */
+    private static ScheduledExecutorService watchdog(){
+        ScheduledExecutorService watchdog =
+                Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "outbound-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        watchdog.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for(Outbound outbound : open){
+                if(outbound.stalled(now)){
+                    NimMetrics.writeTimeout();
+                    outbound.close();
+                    outbound.onStall.run();
+                }
+            }
+        }, WATCH_INTERVAL, WATCH_INTERVAL, TimeUnit.MILLISECONDS);
+        return watchdog;
+    }
+
+    /**
+     * A queued frame
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Frame {
+
+        /** The bytes of the frame */
+        final ByteBuffer bytes;
+
+        /** The kind of frame */
+        final int kind;
+
+        /**
+         * Wrap a frame
+         *
+         * @param bytes the bytes of the frame
+         * @param kind the kind of frame
+         */
+        Frame(ByteBuffer bytes, int kind){
+            this.bytes = bytes;
+            this.kind = kind;
+        }
+    }
+}
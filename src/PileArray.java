@@ -0,0 +1,193 @@
+/*
+ * @filename PileArray.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * The piles of a game, changed in place
+ */
+
+import java.util.Arrays;
+
+/**
+ * The piles of a game kept in one array that moves change in place.
+ * Taking a whole pile shifts the piles after it down, and a split
+ * shifts them up, so a move costs no allocation unless a split needs
+ * more room than the array has. The array grows by half again when
+ * that happens, and is never shrunk, so a game reaches its largest
+ * board once and stays allocation free from then on.
+ *
+ * The key of the position, see Piles.key, is kept up to date as the
+ * piles change, so it never has to be worked out from all the piles.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class PileArray implements PileView {
+
+    /** The piles, only the first size of them are in use */
+    private int[] piles;
+
+    /** The number of piles */
+    private int size;
+
+    /** The key of the position */
+    private long key;
+
+    /**
+     * Create a list of piles
+     *
+     * @param piles the starting piles, copied
+     */
+    public PileArray(int[] piles){
+        this.piles = piles.clone();
+        this.size = piles.length;
+        this.key = Piles.key(piles);
+    }
+
+    /**
+     * Put the piles back to a starting list, reusing the array if it
+     * has room
+     *
+     * @param start the starting piles, copied
+     */
+    public void reset(int[] start){
+        if(piles.length < start.length)
+            piles = new int[start.length];
+        System.arraycopy(start, 0, piles, 0, start.length);
+        size = start.length;
+        key = Piles.key(start);
+    }
+
+    /**
+     * Get the number of piles
+     *
+     * @return the number of piles
+     */
+    @Override
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Get the number of sticks in a pile
+     *
+     * @param pile the pile number (zero indexed)
+     * @return the number of sticks in it
+     */
+    @Override
+    public int get(int pile){
+        if(pile >= size)
+            throw new IndexOutOfBoundsException(pile);
+        return piles[pile];
+    }
+
+    /**
+     * Get the key of the position
+     *
+     * @return the key, the same for every order of the same piles
+     */
+    @Override
+    public long key(){
+        return key;
+    }
+
+    /**
+     * Copy the piles out
+     *
+     * @return a new array holding the piles
+     */
+    @Override
+    public int[] toArray(){
+        return Arrays.copyOf(piles, size);
+    }
+
+    /**
+     * Take sticks from one end of a pile
+     *
+     * @param pile the pile number (zero indexed)
+     * @param amount the number of sticks to take
+     */
+    public void take(int pile, int amount){
+        key -= Piles.zobrist(piles[pile]);
+        piles[pile] -= amount;
+        key += Piles.zobrist(piles[pile]);
+    }
+
+    /**
+     * Take a whole pile away
+     *
+     * @param pile the pile number (zero indexed)
+     */
+    public void remove(int pile){
+        key -= Piles.zobrist(piles[pile]);
+        System.arraycopy(piles, pile + 1, piles, pile, size - pile - 1);
+        size--;
+    }
+
+    /**
+     * Take a run of sticks out of the middle of a pile, leaving two
+     * piles where it was
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the number of sticks left before the run
+     * @param amount the number of sticks in the run
+     */
+    public void split(int pile, int start, int amount){
+        if(size == piles.length)
+            piles = Arrays.copyOf(piles, size + (size >> 1) + 1);
+        int second = piles[pile] - start - amount;
+        key += Piles.zobrist(start) + Piles.zobrist(second)
+                - Piles.zobrist(piles[pile]);
+        System.arraycopy(piles, pile + 1, piles, pile + 2, size - pile - 1);
+        piles[pile] = start;
+        piles[pile + 1] = second;
+        size++;
+    }
+
+    /**
+     * Apply an accepted move the way NimModel does. The move isn't
+     * checked, it is assumed to be legal.
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     */
+    public void apply(int pile, int start, int amount){
+        if(amount - start == piles[pile])
+            remove(pile);
+        else if(start == 0 || start + amount == piles[pile])
+            take(pile, amount);
+        else
+            split(pile, start, amount);
+    }
+
+    /**
+     * Checksum of the piles, the same as Piles.checksum gives for an
+     * array holding them
+     *
+     * @return the checksum
+     */
+    public int checksum(){
+        // four piles a step, so the multiplies don't wait on each other
+        int hash = 1, i = 0;
+        for(; i + 3 < size; i += 4)
+            hash = 923521 * hash + 29791 * piles[i] + 961 * piles[i + 1] +
+                    31 * piles[i + 2] + piles[i + 3];
+        for(; i < size; i++)
+            hash = 31 * hash + piles[i];
+        return hash;
+    }
+
+    /**
+     * Show the piles
+     *
+     * @return the piles separated by spaces
+     */
+    @Override
+    public String toString(){
+        StringBuilder str = new StringBuilder();
+        for(int i = 0; i < size; i++)
+            str.append(piles[i]).append(' ');
+        return str.toString();
+    }
+}
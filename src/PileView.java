@@ -0,0 +1,59 @@
+/*
+ * @filename PileView.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A read only look at a list of piles
+ */
+
+/**
+ * A read only look at the piles of a game. The model hands its own
+ * piles to every ModelListener through this rather than a copy, so a
+ * view is only good for the length of the call it was passed to. A
+ * listener that wants the piles later has to take a copy with toArray.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public interface PileView {
+
+    /**
+     * Get the number of piles
+     *
+     * @return the number of piles
+     */
+    int size();
+
+    /**
+     * Get the number of sticks in a pile
+     *
+     * @param pile the pile number (zero indexed)
+     * @return the number of sticks in it
+     */
+    int get(int pile);
+
+    /**
+     * Copy the piles out
+     *
+     * @return a new array holding the piles
+     */
+    default int[] toArray(){
+        int[] piles = new int[size()];
+        for(int i = 0; i < piles.length; i++)
+            piles[i] = get(i);
+        return piles;
+    }
+
+    /**
+     * Get the key of the position, the same for every order of the
+     * same piles, see Piles.key
+     *
+     * @return the key
+     */
+    default long key(){
+        long key = 0;
+        for(int i = 0; i < size(); i++)
+            key += Piles.zobrist(get(i));
+        return key;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * @filename Piles.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Helpers for working with a list of piles
+ */
+
+import java.util.Arrays;
+
+/**
+ * Operations on a plain list of piles that both sides of the connection
+ * need to agree on, so a client can follow the game from the moves
+ * alone.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class Piles {
+
+    /** Odd constant that spreads pile sizes over the key space */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Can't be made, everything is static
+     */
+    private Piles(){}
+
+    /**
+     * Check that a move can be applied to a list of piles, the same
+     * bounds NimModel checks before accepting one. A client whose copy
+     * of the board has drifted can be sent a move that doesn't fit it.
+     *
+     * @param piles the piles
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount to take
+     * @param amount the amount to take from the start index
+     * @return true if the move fits the piles
+     */
+    public static boolean fits(int[] piles, int pile, int start,
+                               int amount){
+        return pile >= 0 && pile < piles.length && start >= 0 && amount >= 0
+                && start + amount <= piles[pile];
+    }
+
+    /**
+     * Apply an accepted move to a list of piles, the same way NimModel
+     * does. The move isn't checked, see fits.
+     *
+     * @param piles the piles before the move
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount to take
+     * @param amount the amount to take from the start index
+     * @return the piles after the move, may be the same array
+     */
+    public static int[] apply(int[] piles, int pile, int start, int amount){
+        // whole pile is taken
+        if(amount - start == piles[pile]){
+            int[] newPiles = new int[piles.length - 1];
+            System.arraycopy(piles, 0, newPiles, 0, pile);
+            System.arraycopy(piles, pile + 1, newPiles, pile,
+                    piles.length - pile - 1);
+            return newPiles;
+        }
+
+        // taken from one end of the pile
+        if(start == 0 || start + amount == piles[pile]){
+            piles[pile] -= amount;
+            return piles;
+        }
+
+        // split in two
+        int[] newPiles = new int[piles.length + 1];
+        System.arraycopy(piles, 0, newPiles, 0, pile);
+        newPiles[pile] = start;
+        newPiles[pile + 1] = piles[pile] - start - amount;
+        System.arraycopy(piles, pile + 1, newPiles, pile + 2,
+                piles.length - pile - 1);
+        return newPiles;
+    }
+
+    /**
+     * Checksum of a list of piles, used to catch a client whose copy
+     * of the board has drifted from the server's
+     *
+     * @param piles the piles
+     * @return the checksum
+     */
+    public static int checksum(int[] piles){
+        return Arrays.hashCode(piles);
+    }
+
+    /**
+     * The random looking value a pile adds to the key of a position.
+     * Every pile size gets a fixed value, the way Zobrist hashing gives
+     * every piece on a square one, worked out by a mixing function
+     * rather than kept in a table since piles have no upper bound.
+     * Empty piles add nothing.
+     *
+     * @param pile the pile size
+     * @return the pile's value
+     */
+    public static long zobrist(int pile){
+        if(pile == 0)
+            return 0;
+        long z = pile * GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Key of a position. The order of the piles doesn't change who wins,
+     * so the key is the sum of the values of the piles, which doesn't
+     * depend on the order either. A sum rather than the usual xor, so a
+     * pair of equal piles doesn't cancel out. A move only changes one
+     * or two piles, so the key can be kept up to date by subtracting
+     * their old values and adding the new ones, see PileArray.
+     *
+     * @param piles the piles
+     * @return the key, the same for every order of the same piles
+     */
+    public static long key(int[] piles){
+        long key = 0;
+        for(int pile : piles)
+            key += zobrist(pile);
+        return key;
+    }
+}
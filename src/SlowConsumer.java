@@ -0,0 +1,48 @@
+/*
+ * @filename SlowConsumer.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * What to do with a client that doesn't keep up with its messages
+ */
+
+/**
+ * What a proxy does when a client stops reading and its outbound queue
+ * fills up. Whatever the policy, messages that can't be made up for
+ * later, like the protocol version, the session token and the end of
+ * the game, are always queued.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public enum SlowConsumer {
+
+    /**
+     * Throw the new board updates away, and keep only the newest of the
+     * messages that say whose turn it is. Clients on version 3 notice
+     * the board checksum no longer matches and ask for the board again
+     */
+    DROP,
+
+    /**
+     * Throw away everything queued that hasn't started to be written,
+     * and queue the whole board and whose turn it is instead
+     */
+    COALESCE,
+
+    /** Close the connection, clients on version 4 can resume */
+    DISCONNECT;
+
+    /**
+     * Look up a policy from a command line argument
+     *
+     * @param arg the argument, like "coalesce"
+     * @return the policy, or null if the argument isn't one
+     */
+    public static SlowConsumer parse(String arg){
+        for(SlowConsumer policy : values())
+            if(policy.name().equalsIgnoreCase(arg))
+                return policy;
+        return null;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * @filename SpscRing.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A lock free queue of messages from one thread to another
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of messages with a single producer and a single
+ * consumer, that neither side ever locks. The messages are slots made
+ * when the ring is, and reused for as long as it lives. The producer
+ * fills a slot in place and the consumer reads it in place, so passing
+ * a message copies nothing and allocates nothing.
+ *
+ * The producer claims and commits slots as it fills them, and publishes
+ * them all at once, so the consumer only ever sees whole batches. It is
+ * up to the producer's owner to make sure only one thread produces at a
+ * time, a monitor the producing threads share is enough.
+ *
+ * A consumer with nothing to read parks until something is published or
+ * the ring is closed. A producer that finds the ring full gets no slot,
+ * and decides itself whether to wait or give up.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class SpscRing {
+
+    /** Reads and writes the index of the next slot to consume */
+    private static final VarHandle HEAD;
+
+    /** Reads and writes the index of the last slot published */
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SpscRing.class, "head", long.class);
+            TAIL = lookup.findVarHandle(SpscRing.class, "tail", long.class);
+        } catch (ReflectiveOperationException roe){
+            throw new ExceptionInInitializerError(roe);
+        }
+    }
+
+    /** The slots, indexed by sequence number modulo their count */
+    private final Slot[] slots;
+
+    /** Picks a slot from a sequence number */
+    private final int mask;
+
+    /** Sequence number of the next slot to consume, consumer writes it */
+    private long head;
+
+    /** Sequence number after the last slot published, producer writes it */
+    private long tail;
+
+    /** Sequence number after the last slot committed, producer only */
+    private long committed;
+
+    /** The producer's last look at head, so it rarely has to read it */
+    private long headCache;
+
+    /** The consumer's last look at tail, so it rarely has to read it */
+    private long tailCache;
+
+    /** The consumer while it is parked, or null */
+    private volatile Thread waiter;
+
+    /** If no more slots will be published */
+    private volatile boolean closed;
+
+    /**
+     * Create an empty ring
+     *
+     * @param capacity the most slots, rounded up to a power of two
+     */
+    public SpscRing(int capacity){
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        slots = new Slot[size];
+        for(int i = 0; i < size; i++)
+            slots[i] = new Slot();
+        mask = size - 1;
+    }
+
+    /**
+     * Get the next free slot to fill, producer only. It is not the
+     * consumer's until committed and published.
+     *
+     * @return the slot, or null if the ring is full or closed
+     */
+    public Slot claim(){
+        if(closed)
+            return null;
+        if(committed - headCache == slots.length){
+            headCache = (long) HEAD.getAcquire(this);
+            if(committed - headCache == slots.length)
+                return null;
+        }
+        return slots[(int) committed & mask];
+    }
+
+    /**
+     * Finish filling the slot last claimed, producer only
+     */
+    public void commit(){
+        committed++;
+    }
+
+    /**
+     * Hand every committed slot to the consumer, waking it if it is
+     * parked, producer only
+     */
+    public void publish(){
+        if(committed == (long) TAIL.getOpaque(this))
+            return;
+        // a volatile write then read, so the consumer either sees the new
+        // tail before it parks or is seen parked and woken
+        TAIL.setVolatile(this, committed);
+        Thread parked = waiter;
+        if(parked != null)
+            LockSupport.unpark(parked);
+    }
+
+    /**
+     * Get the oldest published slot, without consuming it, consumer only
+     *
+     * @return the slot, or null if there is none
+     */
+    public Slot peek(){
+        if(head == tailCache){
+            tailCache = (long) TAIL.getVolatile(this);
+            if(head == tailCache)
+                return null;
+        }
+        return slots[(int) head & mask];
+    }
+
+    /**
+     * Give the oldest published slot back to the producer once it has
+     * been read, consumer only
+     */
+    public void release(){
+        HEAD.setRelease(this, head + 1);
+    }
+
+    /**
+     * Wait for a slot to be published, consumer only. Slots published
+     * before the ring was closed are still handed out after it is.
+     *
+     * @return false once the ring is closed and every slot consumed
+     */
+    public boolean await(){
+        while(peek() == null){
+            if(closed)
+                return peek() != null;
+            waiter = Thread.currentThread();
+            if(peek() == null && !closed)
+                LockSupport.park(this);
+            waiter = null;
+        }
+        return true;
+    }
+
+    /**
+     * Stop taking slots, and wake the consumer so it can finish
+     */
+    public void close(){
+        closed = true;
+        Thread parked = waiter;
+        if(parked != null)
+            LockSupport.unpark(parked);
+    }
+
+    /**
+     * Check if the ring has been closed
+     *
+     * @return true if no more slots will be published
+     */
+    public boolean isClosed(){
+        return closed;
+    }
+
+    /**
+     * A message in the ring. Its fields mean whatever the opcode says
+     * they do, and hold what the last message through the slot left
+     * there until they are written again.
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    static class Slot implements PileView {
+
+        /** The opcode */
+        int op;
+
+        /** The pile number of a move */
+        int pile;
+
+        /** The start of a move */
+        int start;
+
+        /** The amount of a move */
+        int amount;
+
+        /** The checksum of the board after a move */
+        int checksum;
+
+        /** A session token */
+        long token;
+
+        /** A player name */
+        String name;
+
+        /** If the slot carries a board, or a move */
+        boolean present;
+
+        /** The board, grown as needed and never shrunk */
+        private int[] piles = new int[0];
+
+        /** Piles of the board in use */
+        private int size;
+
+        /**
+         * Copy a board into the slot
+         *
+         * @param board the board, null for none
+         */
+        void board(PileView board){
+            present = board != null;
+            size = present ? board.size() : 0;
+            if(piles.length < size)
+                piles = new int[size];
+            for(int i = 0; i < size; i++)
+                piles[i] = board.get(i);
+        }
+
+        /**
+         * Get the number of piles of the board in the slot
+         *
+         * @return the number of piles
+         */
+        @Override
+        public int size(){
+            return size;
+        }
+
+        /**
+         * Get the number of sticks in a pile of the board in the slot
+         *
+         * @param pile the pile number (zero indexed)
+         * @return the number of sticks in it
+         */
+        @Override
+        public int get(int pile){
+            return piles[pile];
+        }
+    }
+}
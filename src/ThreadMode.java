@@ -0,0 +1,52 @@
+/*
+ * @filename ThreadMode.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * The kinds of threads the proxies can read input on
+ */
+
+/**
+ * How a proxy runs its input handling loop. Platform threads are the
+ * original behaviour, virtual threads let a server hold many more
+ * connections since a blocked read only parks the virtual thread.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public enum ThreadMode {
+
+    /** One operating system thread per input loop */
+    PLATFORM,
+
+    /** One virtual thread per input loop */
+    VIRTUAL;
+
+    /**
+     * Start a task on a new thread of this kind
+     *
+     * @param name the name of the thread
+     * @param task the task to run
+     * @return the started thread
+     */
+    public Thread start(String name, Runnable task){
+        if(this == VIRTUAL)
+            return Thread.ofVirtual().name(name).start(task);
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Look up a thread mode from a command line argument
+     *
+     * @param arg the argument, either "platform" or "virtual"
+     * @return the mode, or null if the argument isn't a mode
+     */
+    public static ThreadMode parse(String arg){
+        for(ThreadMode mode : values())
+            if(mode.name().equalsIgnoreCase(arg))
+                return mode;
+        return null;
+    }
+}
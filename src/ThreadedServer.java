@@ -0,0 +1,83 @@
+/*
+ * @filename ThreadedServer.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A thread per connection server for the Game of Nim
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Serves games over blocking sockets. Acceptor threads hand each
+ * connection to a ViewProxy that reads and writes it on threads of its
+ * own, platform or virtual.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class ThreadedServer implements Transport {
+
+    /** The address to bind to */
+    private final InetSocketAddress address;
+
+    /** Pairs joined players into games */
+    private final Matchmaker matchmaker;
+
+    /** The kind of thread each connection reads and writes on */
+    private final ThreadMode threadMode;
+
+    /** What to do with clients that can't keep up */
+    private final SlowConsumer policy;
+
+    /**
+     * Create a new thread per connection server
+     *
+     * @param address the address to bind to
+     * @param matchmaker pairs joined players into games
+     * @param threadMode the kind of thread each connection reads and
+     *                   writes on
+     * @param policy what to do with clients that can't keep up
+     */
+    public ThreadedServer(InetSocketAddress address, Matchmaker matchmaker,
+                          ThreadMode threadMode, SlowConsumer policy){
+        this.address = address;
+        this.matchmaker = matchmaker;
+        this.threadMode = threadMode;
+        this.policy = policy;
+    }
+
+    /**
+     * Bind to the address and start accepting connections
+     *
+     * @throws IOException if the socket can't be bound
+     */
+    @Override
+    public void start() throws IOException {
+        // bind to socket
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(address, NimServer.BACKLOG);
+
+        // accept on several threads, pairing through one matchmaker
+        Runnable acceptor = () -> {
+            try {
+                while(true){
+                    // open a connection to a client
+                    Socket socket = serverSocket.accept();
+                    ViewProxy proxy = new ViewProxy(socket, threadMode,
+                            policy);
+                    proxy.setListener(matchmaker.seat());
+                }
+            } catch (IOException ioe){
+                System.err.println("ThreadedServer: IO error");
+                ioe.printStackTrace(System.err);
+                System.exit(1);
+            }
+        };
+        for(int i = 0; i < NimServer.ACCEPTORS; i++)
+            new Thread(acceptor, "acceptor-" + i).start();
+    }
+}
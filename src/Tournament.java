@@ -0,0 +1,521 @@
+/*
+ * @filename Tournament.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Plays strategies against each other in process, many games at once
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays two strategies against each other for as many games as asked,
+ * with no sockets and no threads per game. Each game is a NimModel
+ * whose two seats are model listeners that call straight back into it,
+ * so a move costs what the model's rules cost and nothing more.
+ *
+ * The games are split into shards over a fork/join pool, several per
+ * thread to even out the work. A shard plays its games one after
+ * another on two models it keeps for the whole run, one with each
+ * strategy moving first, started again with newGame between games, so
+ * the strategies take turns going first. A shard counts into plain
+ * fields of its own and adds them to the shared counters once, when it
+ * is done, so shards never wait on each other.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class Tournament {
+
+    /**
+     * Picks moves for one side of a tournament
+     */
+    public interface Strategy {
+
+        /**
+         * Pick a move
+         *
+         * @param piles the board, not empty
+         * @param key the key of the board, see Piles.key
+         * @param random where to get random numbers
+         * @return {pile, start, amount} as NimModel.moveRequest takes them
+         */
+        int[] move(int[] piles, long key, Random random);
+    }
+
+    /** The usage message */
+    private static final String USAGE = "Usage: java Tournament" +
+            " random|greedy|perfect|mcts random|greedy|perfect|mcts" +
+            " games [pile1 [pile2 ...]]";
+
+    /** Shards per thread of the pool, to even out the work */
+    private static final int SHARDS_PER_THREAD = 4;
+
+    /** Longest game counted on its own, longer ones share the last count */
+    private static final int MAX_LENGTH = 256;
+
+    /** Megabytes of positions perfect strategies cache */
+    private static final int CACHE_SIZE = 16;
+
+    /** The starting piles of every game */
+    private final int[] piles;
+
+    /** The two strategies */
+    private final Strategy[] strategies;
+
+    /** The names of the strategies, for the report */
+    private final String[] names;
+
+    /** Games won by each strategy */
+    private final LongAdder[] wins = {new LongAdder(), new LongAdder()};
+
+    /** Games won by each strategy when it moved first */
+    private final LongAdder[] firstWins = {new LongAdder(), new LongAdder()};
+
+    /** Games each strategy moved first in */
+    private final LongAdder[] firsts = {new LongAdder(), new LongAdder()};
+
+    /** Moves that took a whole pile */
+    private final LongAdder removes = new LongAdder();
+
+    /** Moves that took from one end of a pile */
+    private final LongAdder takes = new LongAdder();
+
+    /** Moves that split a pile in two */
+    private final LongAdder splits = new LongAdder();
+
+    /** Moves refused by the model, the strategy forfeits the game */
+    private final LongAdder invalid = new LongAdder();
+
+    /** Games by number of moves */
+    private final AtomicLongArray lengths = new AtomicLongArray(MAX_LENGTH + 1);
+
+    /** The most moves of any game */
+    private final LongAccumulator longest = new LongAccumulator(Math::max, 0);
+
+    /** Nanoseconds the last run took */
+    private long elapsed;
+
+    /**
+     * Set up a tournament
+     *
+     * @param piles the starting piles of every game
+     * @param first one strategy
+     * @param firstName its name
+     * @param second the other strategy
+     * @param secondName its name
+     */
+    public Tournament(int[] piles, Strategy first, String firstName,
+                      Strategy second, String secondName){
+        this.piles = piles;
+        this.strategies = new Strategy[]{first, second};
+        this.names = new String[]{firstName, secondName};
+    }
+
+    /**
+     * Play games as a bot of a given strength would
+     *
+     * @param strength how well to play
+     * @param solver works out perfect moves
+     * @return the strategy
+     */
+    public static Strategy strategy(BotPlayer.Strength strength,
+                                    GrundySolver solver){
+        return (piles, key, random) ->
+                BotPlayer.chooseMove(strength, solver, piles, key, random);
+    }
+
+    /**
+     * Play the games, and wait for them all to finish
+     *
+     * @param pool the pool to play on
+     * @param games the number of games
+     */
+    public void run(ForkJoinPool pool, long games){
+        long start = System.nanoTime();
+        int shards = (int) Math.max(1, Math.min(games,
+                (long) pool.getParallelism() * SHARDS_PER_THREAD));
+        List<Callable<Void>> tasks = new ArrayList<>(shards);
+        for(int i = 0; i < shards; i++){
+            long count = games / shards + (i < games % shards ? 1 : 0);
+            tasks.add(() -> {
+                new Shard().play(count);
+                return null;
+            });
+        }
+        try {
+            for(Future<Void> future : pool.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee){
+            throw new IllegalStateException("Tournament: shard failed",
+                    ee.getCause());
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Describe the results of the games played so far
+     *
+     * @return a few lines of results
+     */
+    public String report(){
+        long games = wins[0].sum() + wins[1].sum();
+        double seconds = elapsed / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d games of %s in %.1fs," +
+                        " %.0f games/min\n", games, board(), seconds,
+                games / Math.max(seconds, 1e-9) * 60));
+        for(int s = 0; s < 2; s++)
+            report.append(String.format("%-8s won %5.1f%%, %5.1f%% moving" +
+                            " first, %5.1f%% moving second\n", names[s],
+                    percent(wins[s].sum(), games),
+                    percent(firstWins[s].sum(), firsts[s].sum()),
+                    percent(wins[s].sum() - firstWins[s].sum(),
+                            games - firsts[s].sum())));
+        long moves = removes.sum() + takes.sum() + splits.sum();
+        report.append(String.format("moves per game mean %.2f p50 %d" +
+                        " p99 %d max %d\n", (double) moves / Math.max(games, 1),
+                length(games, 50), length(games, 99), longest.get()));
+        report.append(String.format("%d moves: %.1f%% whole pile, %.1f%%" +
+                        " from an end, %.1f%% split, %d refused\n", moves,
+                percent(removes.sum(), moves), percent(takes.sum(), moves),
+                percent(splits.sum(), moves), invalid.sum()));
+        return report.toString();
+    }
+
+    /**
+     * Show the starting piles
+     *
+     * @return the piles separated by dashes
+     */
+    private String board(){
+        StringBuilder board = new StringBuilder();
+        for(int pile : piles)
+            board.append(board.length() == 0 ? "" : "-").append(pile);
+        return board.toString();
+    }
+
+    /**
+     * Work out a percentage
+     *
+     * @param part the part
+     * @param whole the whole
+     * @return the part as a percentage of the whole, 0 if it is empty
+     */
+    private static double percent(long part, long whole){
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    /**
+     * Find the number of moves a percentage of games took no more than
+     *
+     * @param games the number of games
+     * @param percentile the percentage
+     * @return the number of moves
+     */
+    private long length(long games, double percentile){
+        long wanted = (long) Math.ceil(games * percentile / 100);
+        long seen = 0;
+        for(int moves = 0; moves <= MAX_LENGTH; moves++){
+            seen += lengths.get(moves);
+            if(seen >= wanted && seen > 0)
+                return moves;
+        }
+        return MAX_LENGTH;
+    }
+
+    /**
+     * Play a tournament from the command line and print the report
+     *
+     * @param args the command line args as defined in usage message
+     */
+    public static void main(String[] args){
+        if(args.length < 3){
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        BotPlayer.Strength[] strengths = new BotPlayer.Strength[2];
+        for(int s = 0; s < 2; s++){
+            strengths[s] = BotPlayer.Strength.parse(args[s]);
+            if(strengths[s] == null){
+                System.err.printf("'%s' not a strategy\n", args[s]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+        long games = 0;
+        int[] piles = new int[Math.max(args.length - 3, 0)];
+        int i = 2;
+        try {
+            games = Long.parseLong(args[i]);
+            for(i = 3; i < args.length; i++)
+                piles[i - 3] = Integer.parseInt(args[i]);
+        } catch (NumberFormatException nfe){
+            System.err.printf("'%s' not a valid integer\n", args[i]);
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if(piles.length == 0)
+            piles = new int[]{3, 4, 5};
+
+        GrundySolver solver = new GrundySolver(null,
+                ForkJoinPool.commonPool(),
+                new TranspositionTable(CACHE_SIZE * (1L << 20)));
+        Tournament tournament = new Tournament(piles,
+                strategy(strengths[0], solver), args[0],
+                strategy(strengths[1], solver), args[1]);
+        tournament.run(ForkJoinPool.commonPool(), games);
+        System.out.print(tournament.report());
+    }
+
+    /**
+     * Plays some of the games, on two models of its own
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Shard {
+
+        /** Games won by each strategy */
+        private final long[] won = new long[2];
+
+        /** Games won by each strategy when it moved first */
+        private final long[] wonFirst = new long[2];
+
+        /** Games each strategy moved first in */
+        private final long[] first = new long[2];
+
+        /** Moves that took a whole pile, from an end, or split a pile */
+        private long removed, taken, split;
+
+        /** Moves refused */
+        private long refused;
+
+        /** Games by number of moves */
+        private final long[] length = new long[MAX_LENGTH + 1];
+
+        /** The most moves of any game */
+        private long most;
+
+        /**
+         * Play games, alternating which strategy moves first, then add
+         * the counts to the tournament's
+         *
+         * @param count the number of games
+         */
+        void play(long count){
+            Seat[][] seats = new Seat[2][];
+            NimModel[] models = new NimModel[2];
+            for(int m = 0; m < 2; m++){
+                seats[m] = new Seat[]{new Seat(m), new Seat(1 - m)};
+                models[m] = new NimModel(piles, null);
+            }
+            Random random = ThreadLocalRandom.current();
+            for(long g = 0; g < count; g++){
+                int m = (int) (g & 1);
+                if(g < 2)
+                    models[m].start(seats[m][0], names[m], seats[m][1],
+                            names[1 - m]);
+                else
+                    models[m].newGame();
+                game(models[m], seats[m], random);
+            }
+            addUp();
+        }
+
+        /**
+         * Play one game that has just been started
+         *
+         * @param model the game
+         * @param seats player1's seat and player2's
+         * @param random where to get random numbers
+         */
+        private void game(NimModel model, Seat[] seats, Random random){
+            first[seats[0].strategy]++;
+            long moves = 0;
+            Seat winner = null;
+            while(winner == null){
+                Seat mover = seats[0].turn ? seats[0] : seats[1];
+                Seat other = mover == seats[0] ? seats[1] : seats[0];
+                mover.turn = false;
+                int[] board = mover.board;
+                int[] move = strategies[mover.strategy].move(board,
+                        mover.key, random);
+                model.moveRequest(move[0], move[1], move[2]);
+                if(mover.turn){
+                    // refused, the strategy forfeits
+                    refused++;
+                    mover.turn = false;
+                    winner = other;
+                    break;
+                }
+                count(board, move);
+                moves++;
+                if(mover.won)
+                    winner = mover;
+                else if(other.won)
+                    winner = other;
+            }
+            seats[0].won = seats[1].won = false;
+            won[winner.strategy]++;
+            if(winner == seats[0])
+                wonFirst[winner.strategy]++;
+            length[(int) Math.min(moves, MAX_LENGTH)]++;
+            most = Math.max(most, moves);
+        }
+
+        /**
+         * Count a move by what it did to its pile
+         *
+         * @param board the board before the move
+         * @param move the move
+         */
+        private void count(int[] board, int[] move){
+            int pile = board[move[0]];
+            if(move[2] - move[1] == pile)
+                removed++;
+            else if(move[1] == 0 || move[1] + move[2] == pile)
+                taken++;
+            else
+                split++;
+        }
+
+        /**
+         * Add this shard's counts to the tournament's
+         */
+        private void addUp(){
+            for(int s = 0; s < 2; s++){
+                wins[s].add(won[s]);
+                firstWins[s].add(wonFirst[s]);
+                firsts[s].add(first[s]);
+            }
+            removes.add(removed);
+            takes.add(taken);
+            splits.add(split);
+            invalid.add(refused);
+            for(int moves = 0; moves <= MAX_LENGTH; moves++)
+                if(length[moves] != 0)
+                    lengths.addAndGet(moves, length[moves]);
+            longest.accumulate(most);
+        }
+    }
+
+    /**
+     * One side of a game, told everything by the model as it happens,
+     * on the thread that made the move
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private static class Seat implements ModelListener {
+
+        /** Which strategy plays this seat */
+        final int strategy;
+
+        /** A copy of the board */
+        int[] board;
+
+        /** The key of the board */
+        long key;
+
+        /** If it is this seat's turn */
+        boolean turn;
+
+        /** If this seat won the game */
+        boolean won;
+
+        /**
+         * Make a seat
+         *
+         * @param strategy which strategy plays it
+         */
+        Seat(int strategy){
+            this.strategy = strategy;
+        }
+
+        /**
+         * Report a player quit
+         */
+        @Override
+        public void quit() {
+            turn = false;
+        }
+
+        /**
+         * Report a player made a move
+         *
+         * @param piles the new piles formed from the move
+         */
+        @Override
+        public void moveMade(PileView piles) {
+            board = piles.toArray();
+            key = piles.key();
+        }
+
+        /**
+         * Report that a player is waiting for other player
+         */
+        @Override
+        public void waitingForOtherPlayer() {
+            // seats are always started together
+        }
+
+        /**
+         * Report that it's this seat's turn to play
+         */
+        @Override
+        public void myTurn() {
+            turn = true;
+        }
+
+        /**
+         * Report that it's another players turn to play
+         *
+         * @param player the player who's turn it is
+         */
+        @Override
+        public void otherTurn(String player) {
+            turn = false;
+        }
+
+        /**
+         * Report that this seat has won
+         */
+        @Override
+        public void youWon() {
+            won = true;
+        }
+
+        /**
+         * Report that another player has won
+         *
+         * @param player the winning player
+         */
+        @Override
+        public void otherWin(String player) {
+            // the winner's seat is told
+        }
+
+        /**
+         * Report that a new game has been started
+         *
+         * @param piles the list of piles and amounts
+         */
+        @Override
+        public void newGame(PileView piles) {
+            moveMade(piles);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * @filename Transport.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A way for players to reach the games of a server
+ */
+
+import java.io.IOException;
+
+/**
+ * Carries players' messages to a matchmaker and the games it seats them
+ * in, and the games' messages back. Every transport hands each player
+ * its own view listener from Matchmaker.seat, so players that arrive
+ * over different transports are paired and play each other the same.
+ *
+ * Whatever the transport, a player's messages arrive in the order it
+ * sent them, and the messages a game sends a player between flushes
+ * arrive together, in the order they were sent.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public interface Transport {
+
+    /**
+     * Start taking players, on the transport's own threads, returning
+     * once it is ready for them
+     *
+     * @throws IOException if the transport can't be opened
+     */
+    void start() throws IOException;
+}
@@ -0,0 +1,219 @@
+/*
+ * @filename TranspositionTable.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * A bounded cache of work done on positions, kept off the heap
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers a value for each position that something took work to
+ * find, like a winning move, keyed on the position's key so that every
+ * game that reaches the same board, in whatever order its piles are,
+ * shares it. Hints, analysis and bots can all use the same table.
+ *
+ * The table is one direct buffer of a fixed size, so it costs the
+ * garbage collector nothing however full it gets. It is split into
+ * buckets of WAYS slots, and a key can only be kept in the bucket its
+ * low bits pick. When that bucket is full the slot whose entry is worth
+ * least is replaced. An entry is worth the cost its owner says it took
+ * to find, halved for every generation it has been in the table, so
+ * expensive entries last longer but none last for ever. A generation is
+ * a little over eight seconds.
+ *
+ * Any number of threads can use the table without locking. Each slot
+ * is three longs: the key xor the value xor the meta, the value, and
+ * the meta holding the cost and generation. A reader that sees words
+ * from two different writes finds they don't xor back to its key, and
+ * takes it as a miss, so a torn slot is never mistaken for an entry.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class TranspositionTable {
+
+    /** Returned by get when the key isn't in the table, can't be stored */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    /** Slots in a bucket */
+    static final int WAYS = 4;
+
+    /** Bytes in a slot, the check, the value and the meta */
+    private static final int SLOT = 3 * Long.BYTES;
+
+    /** Bytes in a bucket */
+    private static final int BUCKET = WAYS * SLOT;
+
+    /** Set in the meta of every slot in use */
+    private static final long USED = 1L << 63;
+
+    /** Nanosecond bits below the generation */
+    private static final int GENERATION_SHIFT = 33;
+
+    /** Bits of the meta holding the generation */
+    private static final long GENERATION_MASK = 0x7FFF_FFFFL;
+
+    /** Reads and writes the longs of the buffer atomically */
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class,
+                    ByteOrder.nativeOrder());
+
+    /** The slots */
+    private final ByteBuffer slots;
+
+    /** Picks a bucket from the low bits of a key */
+    private final int mask;
+
+    /** Lookups that found their key */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups that didn't */
+    private final LongAdder misses = new LongAdder();
+
+    /** Entries stored */
+    private final LongAdder stores = new LongAdder();
+
+    /** Entries replaced by one with another key */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create an empty table
+     *
+     * @param bytes the most memory to use, rounded down to a power of
+     *              two buckets, at least one
+     */
+    public TranspositionTable(long bytes){
+        long buckets = Long.highestOneBit(Math.max(bytes / BUCKET, 1));
+        buckets = Math.min(buckets, Integer.highestOneBit(
+                (Integer.MAX_VALUE - Long.BYTES) / BUCKET));
+        mask = (int) buckets - 1;
+        slots = ByteBuffer.allocateDirect((int) buckets * BUCKET + Long.BYTES)
+                .alignedSlice(Long.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     *
+     * @return the number of slots
+     */
+    public int capacity(){
+        return (mask + 1) * WAYS;
+    }
+
+    /**
+     * Look up the value stored for a position
+     *
+     * @param key the key of the position
+     * @return the value, or MISSING
+     */
+    public long get(long key){
+        int bucket = bucket(key);
+        for(int way = 0; way < WAYS; way++){
+            int slot = bucket + way * SLOT;
+            long check = (long) LONGS.getOpaque(slots, slot);
+            long value = (long) LONGS.getOpaque(slots, slot + Long.BYTES);
+            long meta = (long) LONGS.getOpaque(slots, slot + 2 * Long.BYTES);
+            if((meta & USED) != 0 && (check ^ value ^ meta) == key){
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * Store the value for a position, replacing the value already there
+     * for it, or else whichever entry of its bucket is worth least
+     *
+     * @param key the key of the position
+     * @param value the value, anything but MISSING
+     * @param cost how much work the value took to find, entries that
+     *             took more are kept longer
+     */
+    public void put(long key, long value, int cost){
+        if(value == MISSING)
+            throw new IllegalArgumentException("MISSING can't be stored");
+        int bucket = bucket(key);
+        long generation = generation();
+        int victim = bucket;
+        long worth = Long.MAX_VALUE;
+        for(int way = 0; way < WAYS; way++){
+            int slot = bucket + way * SLOT;
+            long check = (long) LONGS.getOpaque(slots, slot);
+            long old = (long) LONGS.getOpaque(slots, slot + Long.BYTES);
+            long meta = (long) LONGS.getOpaque(slots, slot + 2 * Long.BYTES);
+            if((meta & USED) != 0 && (check ^ old ^ meta) == key){
+                victim = slot;
+                worth = -1;
+                break;
+            }
+            if((meta & USED) == 0){
+                if(worth >= 0){
+                    victim = slot;
+                    worth = -1;
+                }
+                continue;
+            }
+            long age = (generation - (meta >>> 32)) & GENERATION_MASK;
+            long w = (meta & 0xFFFF_FFFFL) >>> Math.min(age, 32);
+            if(w < worth){
+                victim = slot;
+                worth = w;
+            }
+        }
+        if(worth >= 0)
+            evictions.increment();
+        long meta = USED | generation << 32
+                | (Math.max(cost, 0) & 0xFFFF_FFFFL);
+        LONGS.setOpaque(slots, victim + Long.BYTES, value);
+        LONGS.setOpaque(slots, victim + 2 * Long.BYTES, meta);
+        LONGS.setOpaque(slots, victim, key ^ value ^ meta);
+        stores.increment();
+    }
+
+    /**
+     * Forget every entry
+     */
+    public void clear(){
+        for(int i = 0; i + Long.BYTES <= slots.capacity(); i += Long.BYTES)
+            LONGS.setOpaque(slots, i, 0L);
+    }
+
+    /**
+     * Describe how well the table is doing
+     *
+     * @return a line of counters
+     */
+    public String stats(){
+        return String.format("slots=%d hits=%d misses=%d stores=%d" +
+                        " evictions=%d", capacity(), hits.sum(), misses.sum(),
+                stores.sum(), evictions.sum());
+    }
+
+    /**
+     * Find the first byte of the bucket a key is kept in
+     *
+     * @param key the key
+     * @return the offset of the bucket
+     */
+    private int bucket(long key){
+        return ((int) key & mask) * BUCKET;
+    }
+
+    /**
+     * Get the current generation
+     *
+     * @return the generation, counting up a little over every eight
+     * seconds
+     */
+    private static long generation(){
+        return (System.nanoTime() >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+}
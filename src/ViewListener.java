@@ -36,6 +36,29 @@ public interface ViewListener {
      */
     int QUIT = 'Q';
 
+    /**
+     * The join instruction of clients that speak more than version 1,
+     * followed by the version wanted and then the same name as JOIN
+     */
+    int VERSIONED_JOIN = 'V';
+
+    /**
+     * The resync instruction, asks for the whole board again
+     */
+    int RESYNC = 'R';
+
+    /**
+     * The resume instruction, sent instead of a join on a new connection
+     * to take back a seat, followed by the version wanted and the token
+     * from SESSION
+     */
+    int RESUME = 'S';
+
+    /**
+     * The hint instruction, asks for the winning move of the board
+     */
+    int HINT = 'H';
+
     /**
      * A request from the client to take a certain
      * amount of sticks from a pile
@@ -63,4 +86,40 @@ public interface ViewListener {
      * Cause server to end the game
      */
     void quit();
+
+    /**
+     * Ask for the whole board, because the copy of it that was kept
+     * up to date from the moves no longer matches
+     *
+     * @param view the view that wants the board
+     */
+    void resync(ModelListener view);
+
+    /**
+     * Take back the seat a session token was given for, on a new
+     * connection
+     *
+     * @param view the view of the new connection
+     * @param token the token from the session
+     */
+    void resume(ModelListener view, long token);
+
+    /**
+     * Ask for the winning move of the board, the answer comes back
+     * through ModelListener.hint some time later
+     *
+     * @param view the view that wants the hint
+     */
+    void hint(ModelListener view);
+
+    /**
+     * Report that the connection to a player was lost without a quit.
+     * Listeners that can't hold a seat for the player to resume just end
+     * the game.
+     *
+     * @param view the view whose connection was lost
+     */
+    default void dropped(ModelListener view){
+        quit();
+    }
 }
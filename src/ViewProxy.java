@@ -6,17 +6,23 @@
  * The view for the Game of Nim
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
 
 /**
  * The model listener that facilitates communication
  * from the client to the server
  *
+ * Messages are staged until the model flushes, then queued for a writer
+ * thread of the same kind as the input thread, so the model never waits
+ * on the client's socket. A client that falls too far behind is dealt
+ * with by the connection's SlowConsumer policy.
+ *
  * @author Chris Tremblay (cst1465)
  * @version 1.0
  */
@@ -29,47 +35,107 @@ public class ViewProxy implements ModelListener {
     private DataInputStream input;
 
     /** The OutputStream the the client from the server */
-    private DataOutputStream output;
+    private OutputStream socketOutput;
+
+    /** Messages written since the last flush */
+    private final ByteArrayOutputStream staged = new ByteArrayOutputStream();
+
+    /** Writes messages into the staged frame */
+    private final DataOutputStream output = new DataOutputStream(staged);
+
+    /** Flushed frames waiting to be written */
+    private final Outbound outbound;
+
+    /** The kind of the staged frame, the highest of its messages' kinds */
+    private int kind = Outbound.DROPPABLE;
+
+    /** The last board the client was sent, for coalescing */
+    private PileView board;
+
+    /** The last turn or outcome message the client was sent, or 0 */
+    private int status;
+
+    /** The player name that went with the status message, or null */
+    private String statusName;
 
     /** The view listener */
     private ViewListener listener;
 
+    /** The protocol version spoken with the client */
+    private volatile int version = WireCodec.V1;
+
+    /** The kind of thread input is read and output written on */
+    private final ThreadMode threadMode;
+
+    /** If the client was given a session it can resume */
+    private volatile boolean resumable;
+
+    /** If the client has quit, so the end of input is expected */
+    private volatile boolean quit;
+
     /**
      * Create a new view proxy
      *
      * @param socket socket to client
      */
     public ViewProxy(Socket socket){
+        this(socket, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * Create a new ViewProxy that reads input on a given kind of thread
+     *
+     * @param socket the socket
+     * @param threadMode the kind of thread to read and write on
+     */
+    public ViewProxy(Socket socket, ThreadMode threadMode){
+        this(socket, threadMode, SlowConsumer.DISCONNECT);
+    }
+
+    /**
+     * Create a new ViewProxy with a policy for when the client can't
+     * keep up
+     *
+     * @param socket the socket
+     * @param threadMode the kind of thread to read and write on
+     * @param policy what to do when the outbound queue is full
+     */
+    public ViewProxy(Socket socket, ThreadMode threadMode,
+                     SlowConsumer policy){
+        this.threadMode = threadMode;
+        this.outbound = new Outbound(policy, this::cut);
         try{
             this.socket = socket;
             socket.setTcpNoDelay(true);
-            output = new DataOutputStream(socket.getOutputStream());
+            socketOutput = WireStats.count(socket.getOutputStream());
             input = new DataInputStream(socket.getInputStream());
+            NimMetrics.connected();
         } catch (IOException ioe){
             errorMessage(ioe);
         }
     }
 
     /**
-     * Set the listener and start the communication handling thread
+     * Set the listener and start the input handling thread
      *
      * @param listener the listener
      */
     public void setListener( ViewListener listener ){
         this.listener = listener;
-        new InputThread().start();
+        threadMode.start("ViewProxy-input", new InputThread());
     }
 
     /**
      * Report a player quit
      */
     @Override
-    public void quit() {
+    public synchronized void quit() {
         try {
+            NimMetrics.sent(ModelListener.QUIT);
             output.writeByte(ModelListener.QUIT);
-            output.flush();
+            kind = Outbound.FINAL;
         } catch (IOException ioe) {
-            errorMessage(ioe);
+            lost(ioe);
         }
     }
 
@@ -79,14 +145,44 @@ public class ViewProxy implements ModelListener {
      * @param piles the new piles formed from the move
      */
     @Override
-    public void moveMade(int[] piles) {
+    public synchronized void moveMade(PileView piles) {
         try{
+            NimMetrics.sent(ModelListener.MOVE_MADE);
             output.writeByte(ModelListener.MOVE_MADE);
-            output.writeByte(piles.length);
-            for (int pile : piles) output.writeByte(pile);
-            output.flush();
+            WireCodec.writePiles(output, version, piles);
+            board = piles;
+        } catch (IOException ioException) {
+            lost(ioException);
+        }
+    }
+
+    /**
+     * Report a player made a move, sending only the move to clients
+     * that can apply it themselves
+     *
+     * @param pile the pile number (zero indexed)
+     * @param start the start amount taken
+     * @param amount the amount taken from the start index
+     * @param checksum the checksum of the board after the move
+     * @param piles the new piles formed from the move
+     */
+    @Override
+    public synchronized void moveApplied(int pile, int start, int amount,
+                                         int checksum, PileView piles) {
+        if(version < WireCodec.V3) {
+            moveMade(piles);
+            return;
+        }
+        try{
+            NimMetrics.sent(ModelListener.MOVE_DELTA);
+            output.writeByte(ModelListener.MOVE_DELTA);
+            WireCodec.writeInt(output, version, pile);
+            WireCodec.writeInt(output, version, start);
+            WireCodec.writeInt(output, version, amount);
+            output.writeInt(checksum);
+            board = piles;
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -94,12 +190,13 @@ public class ViewProxy implements ModelListener {
      * Report that a player is waiting for other player
      */
     @Override
-    public void waitingForOtherPlayer() {
+    public synchronized void waitingForOtherPlayer() {
         try {
-            output.write(ModelListener.WAITING_OTHER_PLAYER);
-            output.flush();
+            NimMetrics.sent(ModelListener.WAITING_OTHER_PLAYER);
+            output.writeByte(ModelListener.WAITING_OTHER_PLAYER);
+            status(ModelListener.WAITING_OTHER_PLAYER, null);
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -107,12 +204,13 @@ public class ViewProxy implements ModelListener {
      * Report that it's my turn to play
      */
     @Override
-    public void myTurn() {
+    public synchronized void myTurn() {
         try{
+            NimMetrics.sent(ModelListener.MY_TURN);
             output.writeByte(ModelListener.MY_TURN);
-            output.flush();
+            status(ModelListener.MY_TURN, null);
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -122,13 +220,14 @@ public class ViewProxy implements ModelListener {
      * @param player the player who's turn it is
      */
     @Override
-    public void otherTurn(String player) {
+    public synchronized void otherTurn(String player) {
         try{
+            NimMetrics.sent(ModelListener.OTHER_TURN);
             output.writeByte(ModelListener.OTHER_TURN);
             output.writeUTF(player);
-            output.flush();
+            status(ModelListener.OTHER_TURN, player);
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -136,12 +235,13 @@ public class ViewProxy implements ModelListener {
      * Report that this player has won
      */
     @Override
-    public void youWon() {
+    public synchronized void youWon() {
         try{
+            NimMetrics.sent(ModelListener.YOU_WON);
             output.writeByte(ModelListener.YOU_WON);
-            output.flush();
+            status(ModelListener.YOU_WON, null);
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -151,13 +251,14 @@ public class ViewProxy implements ModelListener {
      * @param player the winning player
      */
     @Override
-    public void otherWin(String player) {
+    public synchronized void otherWin(String player) {
         try{
+            NimMetrics.sent(ModelListener.OTHER_WIN);
             output.writeByte(ModelListener.OTHER_WIN);
             output.writeUTF(player);
-            output.flush();
+            status(ModelListener.OTHER_WIN, player);
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
@@ -167,18 +268,167 @@ public class ViewProxy implements ModelListener {
      * @param piles the list of piles and amounts
      */
     @Override
-    public void newGame(int[] piles) {
+    public synchronized void newGame(PileView piles) {
         try {
+            NimMetrics.sent(ViewListener.NEW_GAME);
             output.writeByte(ViewListener.NEW_GAME);
-            output.writeByte(piles.length);
-            for( int i : piles )
-                output.writeByte(i);
-            output.flush();
+            WireCodec.writePiles(output, version, piles);
+            board = piles;
         } catch (IOException ioException) {
-            errorMessage(ioException);
+            lost(ioException);
         }
     }
 
+    /**
+     * Give a client that speaks version 4 the token it can take its
+     * seat back with
+     *
+     * @param token the token
+     */
+    @Override
+    public synchronized void session(long token) {
+        if(version < WireCodec.V4)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.SESSION);
+            output.writeByte(ModelListener.SESSION);
+            output.writeLong(token);
+            kind = Math.max(kind, Outbound.ESSENTIAL);
+            resumable = true;
+        } catch (IOException ioException) {
+            lost(ioException);
+        }
+    }
+
+    /**
+     * Answer a client that speaks version 5 with the winning move
+     *
+     * @param move the winning move, or null if every move loses
+     */
+    @Override
+    public synchronized void hint(int[] move) {
+        if(version < WireCodec.V5)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.HINT);
+            output.writeByte(ModelListener.HINT);
+            output.writeByte(move == null ? WireCodec.HINT_LOSING
+                    : WireCodec.HINT_MOVE);
+            if(move != null)
+                for(int field : move)
+                    WireCodec.writeInt(output, version, field);
+        } catch (IOException ioException) {
+            lost(ioException);
+        }
+    }
+
+    /**
+     * Tell the client its hint wasn't worked out
+     */
+    @Override
+    public synchronized void noHint() {
+        if(version < WireCodec.V5)
+            return;
+        try {
+            NimMetrics.sent(ModelListener.HINT);
+            output.writeByte(ModelListener.HINT);
+            output.writeByte(WireCodec.HINT_NONE);
+        } catch (IOException ioException) {
+            lost(ioException);
+        }
+    }
+
+    /**
+     * Queue everything written since the last flush as one frame
+     */
+    @Override
+    public synchronized void flush() {
+        if(staged.size() == 0)
+            return;
+        ByteBuffer frame = ByteBuffer.wrap(staged.toByteArray());
+        staged.reset();
+        int frameKind = kind;
+        kind = Outbound.DROPPABLE;
+        if(!outbound.add(frame, frameKind, this::latest))
+            cut();
+        else if(outbound.startDraining())
+            threadMode.start("ViewProxy-output", new Writer());
+    }
+
+    /**
+     * Take everything staged since the last flush instead of queueing
+     * it, so the benchmarks can decode exactly what a flush would send
+     *
+     * @return the staged messages
+     */
+    synchronized byte[] takeStaged(){
+        byte[] frame = staged.toByteArray();
+        staged.reset();
+        kind = Outbound.DROPPABLE;
+        return frame;
+    }
+
+    /**
+     * Remember the last turn or outcome message, for coalescing
+     *
+     * @param op the opcode
+     * @param name the player name that went with it, or null
+     */
+    private void status(int op, String name){
+        status = op;
+        statusName = name;
+        kind = Math.max(kind, Outbound.TURN);
+    }
+
+    /**
+     * Make a frame with the whole board and whose turn it is, to send
+     * in place of the frames a slow client has fallen behind on
+     *
+     * @return the frame
+     */
+    private ByteBuffer latest(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            if(board != null){
+                data.writeByte(ModelListener.MOVE_MADE);
+                WireCodec.writePiles(data, version, board);
+            }
+            if(status != 0){
+                data.writeByte(status);
+                if(statusName != null)
+                    data.writeUTF(statusName);
+            }
+        } catch (IOException ioe){
+            errorMessage(ioe);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Close the connection to a client that can't keep up. The input
+     * thread then reports it the same as a dropped connection.
+     */
+    private void cut(){
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException ignored){}
+    }
+
+    /**
+     * Handle a failed write by closing the socket. The input thread then
+     * sees the connection is gone and reports it, so a client that drops
+     * mid game can't take the server down with it.
+     *
+     * @param exc the IOException
+     */
+    private void lost(IOException exc){
+        try {
+            socket.close();
+        } catch (IOException ignored){}
+    }
+
     /**
      * Exception handler for various other exceptions
      *
@@ -201,47 +451,117 @@ public class ViewProxy implements ModelListener {
         System.exit(1);
     }
 
+    /**
+     * Stage the protocol version agreed on, it goes out with whatever
+     * the game replies
+     *
+     * @throws IOException never, the frame is in memory
+     */
+    private synchronized void sendVersion() throws IOException {
+        NimMetrics.sent(ModelListener.VERSION);
+        output.writeByte(ModelListener.VERSION);
+        output.writeByte(version);
+        kind = Math.max(kind, Outbound.ESSENTIAL);
+    }
+
+    /**
+     * Read one message from the client and pass it to the listener
+     *
+     * @throws IOException if the read fails, EOFException once the
+     * client has closed the connection
+     */
+    void readMessage() throws IOException {
+        int instruction = input.readByte();
+        NimMetrics.received(instruction);
+        switch (instruction) {
+            case ViewListener.JOIN -> listener.join(this, input.readUTF());
+            case ViewListener.VERSIONED_JOIN -> {
+                version = WireCodec.negotiate(input.readByte());
+                String name = input.readUTF();
+                sendVersion();
+                listener.join(this, name);
+            }
+            case ViewListener.MOVE_REQUEST -> {
+                int pile = WireCodec.readInt(input, version);
+                int start = WireCodec.readInt(input, version);
+                int amount = WireCodec.readInt(input, version);
+                listener.moveRequest(pile, start, amount);
+            }
+            case ViewListener.RESUME -> {
+                version = WireCodec.negotiate(input.readByte());
+                long token = input.readLong();
+                sendVersion();
+                listener.resume(this, token);
+            }
+            case ViewListener.NEW_GAME -> listener.newGame();
+            case ViewListener.QUIT -> {
+                quit = true;
+                listener.quit();
+            }
+            case ViewListener.RESYNC -> listener.resync(this);
+            case ViewListener.HINT -> listener.hint(this);
+            default -> errorMessage(String.format(
+                    "'%s' Bad Message", instruction));
+        }
+    }
+
     /**
      * Thread that handles input reading and processing
      *
      * @author Chris Tremblay (cst1465)
      * @version 1.0
      */
-    private class InputThread extends Thread {
+    private class InputThread implements Runnable {
+
+        /**
+         * Read messages until the connection ends, then report that the
+         * client is gone unless it said so itself
+         */
+        public void run() {
+            try {
+                while (true)
+                    readMessage();
+            } catch (IOException ioe) {
+                if(!quit && resumable)
+                    listener.dropped(ViewProxy.this);
+                else if(!quit)
+                    listener.quit();
+            } finally {
+                NimMetrics.disconnected();
+                cut();
+            }
+        }
+    }
+
+    /**
+     * Writes queued frames to the client until the queue is empty, then
+     * stops. One is started whenever frames are queued with no writer
+     * running, so a connection only has a writer while it has frames
+     * waiting. Writers run on the same kind of thread as the input
+     * loop.
+     *
+     * @author Chris Tremblay (cst1465)
+     * @version 1.0
+     */
+    private class Writer implements Runnable {
+
+        /**
+         * Write frames until there are none left
+         */
         public void run() {
-            int instruction, pile, start, amount;
-            String name;
             try {
-                while (true) {
-                    instruction = input.readByte();
-                    switch (instruction) {
-                        case ViewListener.JOIN -> {
-                            name = input.readUTF();
-                            listener.join(ViewProxy.this, name);
-                        }
-                        case ViewListener.MOVE_REQUEST -> {
-                            pile = input.readByte();
-                            start = input.readByte();
-                            amount = input.readByte();
-                            listener.moveRequest(pile, start, amount);
-                        }
-                        case ViewListener.NEW_GAME -> listener.newGame();
-                        case ViewListener.QUIT -> listener.quit();
-                        default -> errorMessage(String.format(
-                                "'%s' Bad Message", instruction));
-                    }
+                ByteBuffer frame;
+                while ((frame = outbound.nextToDrain()) != null) {
+                    long start = System.nanoTime();
+                    socketOutput.write(frame.array(), frame.position(),
+                            frame.remaining());
+                    socketOutput.flush();
+                    NimMetrics.flushed(System.nanoTime() - start);
+                    outbound.written();
                 }
-            } catch (EOFException ignored) {
-                // squash
-            } catch (SocketException sc){
-                listener.quit();
-            }
-            catch (IOException ioe){
-                    errorMessage(ioe);
-            } finally {
-                try {
-                    socket.close();
-                } catch (IOException ignored){}
+            } catch (IOException ioe) {
+                outbound.close();
+                lost(ioe);
             }
         }
     }
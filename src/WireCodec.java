@@ -0,0 +1,192 @@
+/*
+ * @filename WireCodec.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Encoding of numbers and piles for each protocol version
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * How numbers go on the wire. Version 1 is the original protocol, every
+ * pile count, pile size and move field is a single byte. Version 2
+ * writes them as unsigned LEB128 varints, so small values still take a
+ * byte but piles and boards of any size survive the trip.
+ *
+ * Version 3 uses the same numbers as version 2, but after a move the
+ * server sends MOVE_DELTA with just the move and a checksum of the
+ * board, rather than MOVE_MADE with the whole board.
+ *
+ * Version 4 adds sessions. After joining, the server sends SESSION with
+ * a token, and a client that loses its connection can open a new one
+ * and send RESUME with the token instead of joining, to take its seat
+ * back while the server still holds it.
+ *
+ * Version 5 adds hints. A client sends HINT and the server answers with
+ * HINT and a status byte. HINT_MOVE is followed by the winning move as
+ * three numbers, the way MOVE_REQUEST has them. HINT_LOSING says every
+ * move loses, and HINT_NONE that the server didn't work the hint out.
+ *
+ * A client asks for a later version by sending VERSIONED_JOIN instead of
+ * JOIN, and the server answers with the version it picked before
+ * anything else. Clients that send JOIN get version 1.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class WireCodec {
+
+    /** The original one byte per number protocol */
+    public static final int V1 = 1;
+
+    /** The varint protocol */
+    public static final int V2 = 2;
+
+    /** Version 2 where moves are sent instead of the whole board */
+    public static final int V3 = 3;
+
+    /** Version 3 with sessions that can be resumed */
+    public static final int V4 = 4;
+
+    /** Version 4 with hints */
+    public static final int V5 = 5;
+
+    /** The newest version this side speaks */
+    public static final int LATEST = V5;
+
+    /** Hint status, every move loses */
+    public static final int HINT_LOSING = 0;
+
+    /** Hint status, the winning move follows */
+    public static final int HINT_MOVE = 1;
+
+    /** Hint status, the server doesn't give hints or was too busy */
+    public static final int HINT_NONE = 2;
+
+    /** Returned by getInt when the buffer ends mid number */
+    public static final long INCOMPLETE = -1;
+
+    /** Returned by getInt when a number runs past five bytes */
+    public static final long MALFORMED = -2;
+
+    /**
+     * Can't be made, everything is static
+     */
+    private WireCodec(){}
+
+    /**
+     * Pick the version to speak with a peer
+     *
+     * @param requested the version the peer asked for
+     * @return the version both sides speak
+     */
+    public static int negotiate(int requested){
+        return Math.max(V1, Math.min(requested, LATEST));
+    }
+
+    /**
+     * Write a number
+     *
+     * @param out where to write
+     * @param version the protocol version
+     * @param value the number
+     * @throws IOException if the write fails
+     */
+    public static void writeInt(DataOutput out, int version, int value)
+            throws IOException {
+        if(version == V1) {
+            out.writeByte(value);
+            return;
+        }
+        while((value & ~0x7F) != 0){
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read a number
+     *
+     * @param in where to read from
+     * @param version the protocol version
+     * @return the number
+     * @throws IOException if the read fails
+     */
+    public static int readInt(DataInput in, int version) throws IOException {
+        if(version == V1)
+            return in.readByte();
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("varint too long");
+    }
+
+    /**
+     * Read a number from a buffer without blocking
+     *
+     * @param buffer the buffer
+     * @param version the protocol version
+     * @return the number as an unsigned 32 bit value, INCOMPLETE if
+     * the buffer ends before the number does, or MALFORMED if it is too
+     * long, where readInt throws
+     */
+    public static long getInt(ByteBuffer buffer, int version){
+        if(!buffer.hasRemaining())
+            return INCOMPLETE;
+        if(version == V1)
+            return buffer.get() & 0xFFFFFFFFL;
+        long value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            if(!buffer.hasRemaining())
+                return INCOMPLETE;
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value & 0xFFFFFFFFL;
+        }
+        return MALFORMED;
+    }
+
+    /**
+     * Write a list of piles, count first
+     *
+     * @param out where to write
+     * @param version the protocol version
+     * @param piles the piles
+     * @throws IOException if the write fails
+     */
+    public static void writePiles(DataOutput out, int version,
+                                  PileView piles) throws IOException {
+        writeInt(out, version, piles.size());
+        for(int pile = 0; pile < piles.size(); pile++)
+            writeInt(out, version, piles.get(pile));
+    }
+
+    /**
+     * Read a list of piles, count first
+     *
+     * @param in where to read from
+     * @param version the protocol version
+     * @return the piles
+     * @throws IOException if the read fails
+     */
+    public static int[] readPiles(DataInput in, int version)
+            throws IOException {
+        int size = readInt(in, version);
+        if(size < 0)
+            throw new IOException("negative pile count " + size);
+        int[] piles = new int[size];
+        for(int pile = 0; pile < size; pile++)
+            piles[pile] = readInt(in, version);
+        return piles;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * @filename WireStats.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Counts what the server puts on the wire
+ */
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server wide counters of socket writes, so the cost of a move in
+ * system calls can be checked. With TCP_NODELAY set every write is
+ * sent right away, so writes are also a fair count of packets.
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 1.0
+ */
+public class WireStats {
+
+    /** Calls to write on a socket */
+    private static final LongAdder writes = new LongAdder();
+
+    /** Bytes written to sockets */
+    private static final LongAdder bytes = new LongAdder();
+
+    /** Moves accepted by any model */
+    private static final LongAdder moves = new LongAdder();
+
+    /** Message printed by the summary */
+    private static final String SUMMARY =
+            "wire: %d moves, %d writes, %d bytes, %.2f writes/move\n";
+
+    /**
+     * Can't be made, everything is static
+     */
+    private WireStats(){}
+
+    /**
+     * Count the writes going to a socket
+     *
+     * @param out the socket's output stream
+     * @return a stream that counts every write made to it
+     */
+    public static OutputStream count(OutputStream out){
+        return new FilterOutputStream(out){
+            @Override
+            public void write(int b) throws IOException {
+                writes.increment();
+                bytes.increment();
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException {
+                writes.increment();
+                bytes.add(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Count a write made to a channel
+     *
+     * @param length the number of bytes written
+     */
+    public static void wrote(int length){
+        writes.increment();
+        bytes.add(length);
+    }
+
+    /**
+     * Count an accepted move
+     */
+    public static void moved(){
+        moves.increment();
+    }
+
+    /**
+     * Summarize the counters so far
+     *
+     * @return a line describing the counters
+     */
+    public static String summary(){
+        long m = moves.sum();
+        long w = writes.sum();
+        return String.format(SUMMARY, m, w, bytes.sum(),
+                m == 0 ? 0.0 : (double) w / m);
+    }
+}